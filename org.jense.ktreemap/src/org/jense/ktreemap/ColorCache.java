@@ -0,0 +1,203 @@
+package org.jense.ktreemap;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Cache of the colors of a Display, bounded in size. <BR>
+ * When the cache is full, the least recently used color is removed. It may
+ * still be used by the drawing in progress, so it is disposed later by the
+ * Display, once the current event is over.
+ * <p>
+ * The colors can be quantized : the low bits of each channel are dropped, so
+ * close colors share the same native color. The cache counts its hits, misses
+ * and evictions. All the methods can be called from any thread.
+ * <p>
+ * A KTreeMap keeps the colors of its packed RGB backgrounds and of its
+ * revealed items in such a cache; the colors still in the cache are disposed
+ * with it.
+ */
+public class ColorCache {
+    /**
+     * default number of colors in the cache
+     */
+    public static final int DEFAULT_SIZE = 1024;
+
+    private final Display display;
+
+    private int maxSize;
+
+    // number of low bits dropped in each channel
+    private int quantization = 0;
+
+    private final Map<Integer, Color> colors;
+
+    // colors removed from the cache, to dispose after the current event
+    private final List<Color> evicted = new ArrayList<Color>();
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    private long evictions = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param display display of the colors
+     * @param maxSize maximal number of colors in the cache
+     */
+    public ColorCache(Display display, int maxSize) {
+        this.display = display;
+        this.maxSize = maxSize;
+        this.colors = new LinkedHashMap<Integer, Color>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Color> eldest) {
+                if (size() > ColorCache.this.maxSize) {
+                    evict(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param rgb the color packed in an int (0xRRGGBB)
+     * @return the color, quantized if a quantization is set
+     */
+    public Color getColor(int rgb) {
+        return getColor(rgb >> 16 & 0xFF, rgb >> 8 & 0xFF, rgb & 0xFF);
+    }
+
+    /**
+     * @param r red
+     * @param g green
+     * @param b blue
+     * @return the color, quantized if a quantization is set
+     */
+    public synchronized Color getColor(int r, int g, int b) {
+        if (quantization > 0) {
+            r = quantize(r);
+            g = quantize(g);
+            b = quantize(b);
+        }
+        Integer key = Integer.valueOf(r << 16 | g << 8 | b);
+        Color color = colors.get(key);
+        if (color == null) {
+            misses++;
+            color = new Color(display, r, g, b);
+            colors.put(key, color);
+        } else {
+            hits++;
+        }
+        return color;
+    }
+
+    /**
+     * Grow the cache to keep at least a number of colors.
+     *
+     * @param size number of colors
+     */
+    public synchronized void ensureSize(int size) {
+        if (size > maxSize) {
+            maxSize = size;
+        }
+    }
+
+    /**
+     * @return the number of low bits dropped in each channel
+     */
+    public synchronized int getQuantization() {
+        return quantization;
+    }
+
+    /**
+     * Drop the low bits of each channel, so at most 2^(3 * (8 - bits)) colors
+     * are created. A quantized channel is the middle of its interval. <BR>
+     * The default is 0 : the colors are exact.
+     *
+     * @param bits number of low bits dropped, from 0 to 7
+     */
+    public synchronized void setQuantization(int bits) {
+        if (bits < 0 || bits > 7) {
+            throw new IllegalArgumentException("bits must be in [0, 7]: "
+                    + bits);
+        }
+        quantization = bits;
+    }
+
+    /**
+     * @return the number of colors found in the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of colors created
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of colors removed from the full cache
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of colors in the cache
+     */
+    public synchronized int size() {
+        return colors.size();
+    }
+
+    /**
+     * Dispose all the colors and empty the cache.
+     */
+    public synchronized void dispose() {
+        for (Color color : colors.values()) {
+            color.dispose();
+        }
+        colors.clear();
+        disposeEvicted();
+    }
+
+    private int quantize(int channel) {
+        return channel >> quantization << quantization
+                | 1 << (quantization - 1);
+    }
+
+    private void evict(Color color) {
+        evictions++;
+        evicted.add(color);
+        if (evicted.size() == 1 && !display.isDisposed()) {
+            // after the drawing which may still use the color
+            display.asyncExec(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (ColorCache.this) {
+                        disposeEvicted();
+                    }
+                }
+            });
+        }
+    }
+
+    private void disposeEvicted() {
+        for (Color color : evicted) {
+            color.dispose();
+        }
+        evicted.clear();
+    }
+}
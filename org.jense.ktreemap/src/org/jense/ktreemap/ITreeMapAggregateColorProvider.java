@@ -0,0 +1,20 @@
+package org.jense.ktreemap;
+
+import org.eclipse.swt.graphics.Color;
+import org.jense.ktreemap.core.TreeMapNode;
+
+/**
+ * Color provider which gives a color to a whole subtree. <BR>
+ * KTreeMap uses it for the collapsed branches, which are drawn as a single
+ * cell.
+ *
+ * @see TreeMapNode#isCollapsed()
+ */
+public interface ITreeMapAggregateColorProvider extends ITreeMapColorProvider {
+  /**
+   * Return the background color of a subtree drawn as a single cell.
+   * @param node root of the subtree
+   * @return the background color of the subtree
+   */
+  public Color getAggregateBackground(TreeMapNode node);
+}
@@ -5,12 +5,15 @@
  *************************************************************************************/
 package org.jense.ktreemap;
 
+import org.jense.ktreemap.core.ITreeMapValueProvider;
+import org.jense.ktreemap.core.TreeMapNode;
+
 /**
  * Provider of the KTreeMap
  *
  * @author dutheil_l
  */
-public interface ITreeMapProvider {
+public interface ITreeMapProvider extends ITreeMapValueProvider {
     /**
      * get the label of the node
      *
@@ -0,0 +1,33 @@
+package org.jense.ktreemap;
+
+import org.jense.ktreemap.core.TreeMapNode;
+
+/**
+ * Color provider which gives the background colors as packed RGB integers
+ * (0xRRGGBB). <BR>
+ * KTreeMap asks it the colors of the leaves it draws instead of a Color per
+ * leaf, and only creates the Colors of the distinct values which are drawn.
+ */
+public interface ITreeMapRGBColorProvider extends ITreeMapColorProvider {
+  /**
+   * Return the background color of a value.
+   * @param value the value of a leaf
+   * @return the color packed in an int (0xRRGGBB)
+   */
+  public int getBackgroundRGB(Object value);
+
+  /**
+   * Fill the background colors of the values of nodes.
+   * @param nodes the nodes
+   * @param count number of nodes to fill, from the first one
+   * @param rgb the colors packed in ints (0xRRGGBB), one per node
+   */
+  public void getBackgroundRGB(TreeMapNode[] nodes, int count, int[] rgb);
+
+  /**
+   * Return the maximal number of distinct background colors, so the KTreeMap
+   * can keep all of them between two drawings.
+   * @return the number of colors, or 0 if it is not bounded
+   */
+  public int getPaletteSize();
+}
@@ -1,19 +1,35 @@
 package org.jense.ktreemap;
 
-import org.eclipse.swt.SWT;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.eclipse.swt.events.ControlAdapter;
+import org.eclipse.swt.events.ControlEvent;
 import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.events.MouseMoveListener;
 import org.eclipse.swt.events.PaintEvent;
 import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.FontMetrics;
+import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.widgets.Canvas;
 import org.eclipse.swt.widgets.Composite;
-import org.eclipse.swt.widgets.Display;
+import org.jense.ktreemap.core.SplitSquarified;
+import org.jense.ktreemap.core.SplitStrategy;
+import org.jense.ktreemap.core.TreeMapLayout;
+import org.jense.ktreemap.core.TreeMapNode;
+import org.jense.ktreemap.core.TreeMapPickBuffer;
+import org.jense.ktreemap.core.TreeMapRasterizer;
+import org.jense.ktreemap.core.TreeMapRectangle;
 
 /**
  * Widget who represents each element of a tree in a rectangle of more or
@@ -28,15 +44,37 @@ import org.eclipse.swt.widgets.Display;
  * <p>
  * So, in a KTreeMap, you can see the size and the value of an element in a
  * tree.
+ * <p>
+ * The tree and its layout are in the package org.jense.ktreemap.core, which
+ * does not depend on SWT. The widget only sizes the displayed root, asks the
+ * layout for the positions and paints them.
  *
- * @see org.jense.ktreemap.TreeMapNode
+ * @see org.jense.ktreemap.core.TreeMapNode
  * @author Laurent Dutheil
  */
 public class KTreeMap extends Canvas {
 
     @SuppressWarnings("unused")
     private static final long serialVersionUID = 7255952672238300249L;
-    private Color revealColor = null;
+    // maximal number of colors kept to reveal the items
+    private static final int REVEAL_COLORS_SIZE = 256;
+    // maximal number of colors kept for the packed RGB backgrounds
+    private static final int COLORS_SIZE = 1024;
+    // number of leaves whose packed colors are asked at once
+    private static final int LEAF_BATCH_SIZE = 1024;
+
+    // the color (0xRRGGBB) revealing each background color
+    private final Map<Integer, Integer> revealColors = new LinkedHashMap<Integer, Integer>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+            return size() > REVEAL_COLORS_SIZE;
+        }
+    };
+    // the colors of the packed RGB backgrounds and of the revealed items
+    private final ColorCache colors;
     // active leaf
     private TreeMapNode activeLeaf = null;
     // color provider
@@ -47,6 +85,47 @@ public class KTreeMap extends Canvas {
     private TreeMapNode displayedRoot = null;
     // root of the tree
     private TreeMapNode root = null;
+    // columns of the positions of the tree
+    private TreeMapLayout layout = null;
+    // minimal size of a calculated branch
+    private int minCellSize = 0;
+    // pool of the parallel layout
+    private ForkJoinPool layoutPool = null;
+    private int parallelThreshold = TreeMapLayout.DEFAULT_PARALLEL_THRESHOLD;
+    // key of the last calculated layout
+    private boolean layoutValid = false;
+    private TreeMapNode layoutRoot = null;
+    private SplitStrategy layoutStrategy = null;
+    private int layoutWidth;
+    private int layoutHeight;
+    private int layoutBorder;
+    private long layoutVersion;
+    // calculate once in normalized coordinates, then only scale
+    private boolean normalizedLayout = false;
+    private boolean normalizedValid = false;
+    // node of each pixel, filled while the cells are drawn
+    private TreeMapPickBuffer pickBuffer = null;
+    private boolean pickBufferValid = false;
+    private boolean pickFilling = false;
+    // the cells and the labels, drawn again only when they change
+    private Image backingStore = null;
+    private boolean backingStoreValid = false;
+    // content version of the root drawn in the backing store
+    private long backingStoreVersion;
+    // region being drawn, null to draw everything
+    private Rectangle clipping = null;
+    // cells of the current drawing grouped by color, null to draw at once
+    private CellBatch cellBatch = null;
+    // leaves waiting for their packed colors, with an ITreeMapRGBColorProvider
+    private ITreeMapRGBColorProvider rgbColorProvider = null;
+    private final TreeMapNode[] leafBatch = new TreeMapNode[LEAF_BATCH_SIZE];
+    private final int[] leafColors = new int[LEAF_BATCH_SIZE];
+    private int leafCount = 0;
+    // cells filled in an array of pixels, null to draw them on the GC
+    private TreeMapRasterizer rasterizer = null;
+    private boolean rasterizing = false;
+    // truncated labels and images of their halos
+    private final LabelCache labelCache;
     // divide strategy
     private SplitStrategy strategy = null;
     // zoom
@@ -81,6 +160,8 @@ public class KTreeMap extends Canvas {
         super(parent, style);
 
         zoom = new Zoom();
+        colors = new ColorCache(getDisplay(), COLORS_SIZE);
+        labelCache = new LabelCache(getDisplay(), LabelCache.DEFAULT_SIZE);
 
         setRoot(root);
         setStrategy(strategy);
@@ -93,6 +174,14 @@ public class KTreeMap extends Canvas {
         });
 
         addMouseMoveListener(new HandleMouseMotion());
+
+        addControlListener(new ControlAdapter() {
+            @Override
+            public void controlResized(ControlEvent e) {
+                // the normalized positions stay valid, they are only scaled
+                layoutValid = false;
+            }
+        });
     }
 
     /**
@@ -101,19 +190,76 @@ public class KTreeMap extends Canvas {
      */
     public void calculatePositions() {
         if (getStrategy() != null && displayedRoot != null) {
-            getStrategy().calculatePositions(displayedRoot);
+            if ( !normalizedLayout) {
+                layout.calculatePositions(getStrategy(), displayedRoot);
+            } else if (isNormalizedValid()) {
+                layout.scalePositions(displayedRoot);
+                if ( !layout.isNormalized(displayedRoot)) {
+                    // the grow shows the children of a collapsed branch
+                    layout.calculateNormalizedPositions(getStrategy(),
+                            displayedRoot);
+                }
+            } else {
+                layout.calculateNormalizedPositions(getStrategy(), displayedRoot);
+                normalizedValid = true;
+            }
+            pickBufferValid = false;
+            backingStoreValid = false;
+
+            layoutRoot = displayedRoot;
+            layoutStrategy = getStrategy();
+            layoutWidth = displayedRoot.getWidth();
+            layoutHeight = displayedRoot.getHeight();
+            layoutBorder = TreeMapNode.getBorder();
+            layoutVersion = root.getVersion();
+            layoutValid = true;
         }
     }
 
+    /**
+     * Invalidate the positions of the nodes. <BR>
+     * They will be calculated again at the next paint. The changes of the
+     * weights are detected by the version of the root, but you have to call
+     * this method if you modify the list of the children of a node directly.
+     */
+    public void invalidateLayout() {
+        layoutValid = false;
+        normalizedValid = false;
+        pickBufferValid = false;
+    }
+
+    /**
+     * Invalidate the image of the KTreeMap. <BR>
+     * The cells and the labels are kept in an image, drawn again when the
+     * positions, the values of the nodes (see TreeMapNode#getContentVersion),
+     * the providers, the font or the background change. You have to call this
+     * method if the colors or the labels given by the providers change for
+     * another reason.
+     */
+    public void invalidateImage() {
+        backingStoreValid = false;
+        redraw();
+    }
+
+    /**
+     * @return true if the positions are calculated once in normalized
+     *         coordinates and scaled at each resize
+     */
+    public boolean isNormalizedLayout() {
+        return normalizedLayout;
+    }
+
     /*
      * (non-Javadoc)
      * @see org.eclipse.swt.widgets.Widget#dispose()
      */
     @Override
     public void dispose() {
-        if (revealColor != null) {
-            revealColor.dispose();
+        colors.dispose();
+        if (backingStore != null) {
+            backingStore.dispose();
         }
+        labelCache.clear();
         super.dispose();
     }
 
@@ -153,6 +299,15 @@ public class KTreeMap extends Canvas {
         return displayedRoot;
     }
 
+    /**
+     * get the layout which holds the positions of the nodes of the tree.
+     *
+     * @return the layout
+     */
+    public TreeMapLayout getLayout() {
+        return layout;
+    }
+
     /**
      * get the root.
      *
@@ -183,10 +338,11 @@ public class KTreeMap extends Canvas {
     /**
      * set the active leaf.
      *
-     * @param newActiveLeaf the new active leaf
+     * @param newActiveLeaf the new active leaf (a leaf or a collapsed branch)
      */
     public void setActiveLeaf(TreeMapNode newActiveLeaf) {
-        if (newActiveLeaf == null || newActiveLeaf.isLeaf()) {
+        if (newActiveLeaf == null || newActiveLeaf.isLeaf()
+                || newActiveLeaf.isCollapsed()) {
             activeLeaf = newActiveLeaf;
         }
     }
@@ -196,7 +352,7 @@ public class KTreeMap extends Canvas {
      */
     public void setColorProvider(ITreeMapColorProvider colorProvider) {
         this.colorProvider = colorProvider;
-        redraw();
+        invalidateImage();
     }
 
     /**
@@ -209,10 +365,121 @@ public class KTreeMap extends Canvas {
      * @param newDisplayedRoot new DiplayedRoot
      */
     public void setDisplayedRoot(TreeMapNode newDisplayedRoot) {
+        if (newDisplayedRoot != displayedRoot) {
+            // the images of the labels of the previous root
+            labelCache.reset();
+        }
         displayedRoot = newDisplayedRoot;
+        invalidateLayout();
+        redraw();
+    }
+
+    @Override
+    public void setBackground(Color color) {
+        super.setBackground(color);
+        invalidateImage();
+    }
+
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+        labelCache.clear();
+        invalidateImage();
+    }
+
+    /**
+     * set the minimal width and height of a branch drawn node by node. <BR>
+     * The smaller branches are collapsed : they are drawn as a single cell
+     * with the aggregate color of the color provider. The default is 0.
+     *
+     * @param minCellSize the minimal size in pixels
+     * @see ITreeMapAggregateColorProvider
+     */
+    public void setMinCellSize(int minCellSize) {
+        this.minCellSize = minCellSize;
+        layout.setMinCellSize(minCellSize);
+        invalidateLayout();
         redraw();
     }
 
+    /**
+     * Calculate the positions once in normalized coordinates. <BR>
+     * A resize then only scales the positions to the new size, without
+     * calling the strategy : the cells keep their relative positions and are
+     * stretched with the KTreeMap. The positions are calculated again when the
+     * displayed root, the strategy or a weight changes, or when a grow makes
+     * a collapsed branch large enough for the minimal cell size.
+     *
+     * @param normalizedLayout true to scale the normalized positions at
+     *          each resize
+     * @see TreeMapLayout#calculateNormalizedPositions(SplitStrategy,
+     *      TreeMapNode)
+     */
+    public void setNormalizedLayout(boolean normalizedLayout) {
+        this.normalizedLayout = normalizedLayout;
+        invalidateLayout();
+        redraw();
+    }
+
+    /**
+     * Find the active leaf with a buffer of the size of the KTreeMap which
+     * stores the node drawn on each pixel. <BR>
+     * The buffer is filled while the cells are drawn, and the move of the
+     * mouse then reads the leaf under the cursor in the buffer instead of
+     * searching it in the tree. It costs an int per pixel.
+     *
+     * @param enabled true to use a pick buffer
+     * @see TreeMapPickBuffer
+     */
+    public void setPickBufferEnabled(boolean enabled) {
+        pickBuffer = enabled ? new TreeMapPickBuffer(layout) : null;
+        pickBufferValid = false;
+        redraw();
+    }
+
+    /**
+     * Fill the cells in an array of pixels instead of drawing each rectangle
+     * on the GC. <BR>
+     * The pixels are copied in the image of the KTreeMap with a single
+     * drawImage, which is faster when there are many small leaves. The
+     * bands of rows are filled in parallel with the pool of the parallel
+     * layout, if any.
+     *
+     * @param enabled true to fill the cells in an array of pixels
+     * @see TreeMapRasterizer
+     * @see #setParallelLayout(ForkJoinPool, int)
+     */
+    public void setPixelRendering(boolean enabled) {
+        if (enabled) {
+            rasterizer = new TreeMapRasterizer();
+            rasterizer.setPool(layoutPool);
+        } else {
+            rasterizer = null;
+        }
+        invalidateImage();
+    }
+
+    /**
+     * Calculate the positions in parallel. <BR>
+     * The subtrees with at least threshold nodes are calculated in their own
+     * task of the pool. A <code>null</code> pool calculates the positions on
+     * the UI thread.
+     *
+     * @param pool the pool, or <code>null</code>
+     * @param threshold minimal number of nodes of a subtree calculated in its
+     *          own task
+     * @see TreeMapLayout#setPool(ForkJoinPool)
+     */
+    public void setParallelLayout(ForkJoinPool pool, int threshold) {
+        layoutPool = pool;
+        parallelThreshold = threshold;
+        layout.setPool(pool);
+        layout.setParallelThreshold(threshold);
+        if (rasterizer != null) {
+            rasterizer.setPool(pool);
+        }
+    }
+
     /**
      * set the new root.
      *
@@ -220,6 +487,17 @@ public class KTreeMap extends Canvas {
      */
     public void setRoot(TreeMapNode newRoot) {
         root = newRoot;
+        if (layout != null) {
+            layout.detach();
+        }
+        layout = new TreeMapLayout(root);
+        layout.setPool(layoutPool);
+        layout.setParallelThreshold(parallelThreshold);
+        layout.setMinCellSize(minCellSize);
+        if (pickBuffer != null) {
+            pickBuffer = new TreeMapPickBuffer(layout);
+            pickBufferValid = false;
+        }
         int insets = getBorderWidth();
         root.setX(insets);
         root.setY(insets);
@@ -233,6 +511,7 @@ public class KTreeMap extends Canvas {
      */
     public void setStrategy(SplitStrategy newStrat) {
         strategy = newStrat;
+        invalidateLayout();
         redraw();
     }
 
@@ -243,7 +522,7 @@ public class KTreeMap extends Canvas {
      */
     public void setTreeMapProvider(ITreeMapProvider newColorProvider) {
         treeMapProvider = newColorProvider;
-        redraw();
+        invalidateImage();
     }
 
     /**
@@ -281,33 +560,173 @@ public class KTreeMap extends Canvas {
         int insets = getBorderWidth();
 
         int border = TreeMapNode.getBorder();
-        root.setBounds(new Rectangle(root.getX(), root.getY(), width
-                - border - insets - insets, height - border - insets - insets));
+        root.setSize(width - border - insets - insets, height - border
+                - insets - insets);
 
         if ( !root.equals(displayedRoot)) {
-            displayedRoot.setBounds(new Rectangle(displayedRoot.getX(),
-                    displayedRoot.getY(), width - border - insets - insets, height
-                            - border - insets - insets));
+            displayedRoot.setSize(width - border - insets - insets, height
+                    - border - insets - insets);
         }
 
-        calculatePositions();
+        if ( !isLayoutValid()) {
+            calculatePositions();
+        }
+        if (backingStoreVersion != root.getContentVersion()) {
+            // a value changed : the colors and the labels, not the positions
+            backingStoreValid = false;
+        }
 
-        if ( !displayedRoot.getChildren().isEmpty()) {
-            // the background
-            gc.setBackground(getBackground());
-            gc.fillRectangle(displayedRoot.getX(), displayedRoot.getY(),
-                    displayedRoot.getWidth() + border, displayedRoot
-                            .getHeight()
-                            + border);
-            // the JTreeMapExample
-            draw(gc, displayedRoot);
+        if ( !displayedRoot.getChildren().isEmpty() && width > 0 && height > 0) {
+            if ( !backingStoreValid) {
+                paintBackingStore(width, height);
+            }
+            // only the damaged region is copied
+            Rectangle damage = new Rectangle(e.x, e.y, e.width, e.height)
+                    .intersection(new Rectangle(0, 0, width, height));
+            if ( !damage.isEmpty()) {
+                gc.drawImage(backingStore, damage.x, damage.y, damage.width,
+                        damage.height, damage.x, damage.y, damage.width,
+                        damage.height);
+            }
             // reveal the active leaf
             if (activeLeaf != null) {
                 reveal(gc, activeLeaf);
+                // the labels over the active leaf
+                Rectangle damageClipping = gc.getClipping();
+                clipping = damageClipping.intersection(new Rectangle(activeLeaf
+                        .getX(), activeLeaf.getY(), activeLeaf.getWidth(),
+                        activeLeaf.getHeight()));
+                gc.setClipping(clipping);
+                drawLabelsOver(gc, activeLeaf);
+                gc.setClipping(damageClipping);
+                clipping = null;
+            }
+        }
+    }
+
+    /**
+     * draw the background, the cells and the labels in the backing store.
+     *
+     * @param width width of the KTreeMap
+     * @param height height of the KTreeMap
+     */
+    private void paintBackingStore(int width, int height) {
+        if (backingStore != null
+                && (backingStore.getBounds().width != width
+                        || backingStore.getBounds().height != height)) {
+            backingStore.dispose();
+            backingStore = null;
+        }
+        if (backingStore == null) {
+            backingStore = new Image(getDisplay(), width, height);
+        }
+        backingStoreVersion = root.getContentVersion();
+        GC gc = new GC(backingStore);
+        clipping = new Rectangle(0, 0, width, height);
+        try {
+            // the background
+            gc.setBackground(getBackground());
+            gc.fillRectangle(0, 0, width, height);
+            // the JTreeMapExample
+            pickFilling = pickBuffer != null && !pickBufferValid;
+            if (pickFilling) {
+                pickBuffer.reset(width, height);
+            }
+            if (getColorProvider() instanceof ITreeMapRGBColorProvider) {
+                // the colors of the leaves as ints, by batches
+                rgbColorProvider = (ITreeMapRGBColorProvider) getColorProvider();
+                // all the colors of the provider and the revealed ones
+                colors.ensureSize(rgbColorProvider.getPaletteSize()
+                        + REVEAL_COLORS_SIZE);
+            }
+            if (rasterizer != null) {
+                // the cells in the pixels, then a single drawImage
+                rasterizer.reset(width, height, toRGB(getBackground()));
+                rasterizing = true;
+                draw(gc, displayedRoot);
+                fillLeafBatch(gc);
+                rasterizing = false;
+                rasterizer.rasterize();
+                drawPixels(gc);
+            } else {
+                // one change of the background per color
+                cellBatch = new CellBatch();
+                draw(gc, displayedRoot);
+                fillLeafBatch(gc);
+                CellBatch batch = cellBatch;
+                cellBatch = null;
+                batch.fill(gc, colors);
             }
-            // the labels
+            if (pickFilling) {
+                pickFilling = false;
+                pickBufferValid = true;
+            }
+            // the labels, and the size of their cache for the next drawing
+            labelCache.startDrawing();
             drawLabels(gc, displayedRoot);
+            labelCache.endDrawing();
+        } finally {
+            // the state of the drawing, even if a provider failed
+            gc.dispose();
+            clipping = null;
+            cellBatch = null;
+            rasterizing = false;
+            rgbColorProvider = null;
+            pickFilling = false;
+            Arrays.fill(leafBatch, 0, leafCount, null);
+            leafCount = 0;
         }
+        backingStoreValid = true;
+    }
+
+    /**
+     * copy the pixels of the rasterizer in the gc.
+     */
+    private void drawPixels(GC gc) {
+        int width = rasterizer.getWidth();
+        int height = rasterizer.getHeight();
+        int[] pixels = rasterizer.getPixels();
+        ImageData data = new ImageData(width, height, 24, new PaletteData(
+                0xFF0000, 0xFF00, 0xFF));
+        for (int y = 0; y < height; y++) {
+            data.setPixels(0, y, width, pixels, y * width);
+        }
+        Image image = new Image(getDisplay(), data);
+        try {
+            gc.drawImage(image, 0, 0);
+        } finally {
+            image.dispose();
+        }
+    }
+
+    /**
+     * @return the color packed in an int (0xRRGGBB)
+     */
+    private static int toRGB(Color color) {
+        return color.getRed() << 16 | color.getGreen() << 8 | color.getBlue();
+    }
+
+    /**
+     * @return true if the last normalized positions can be scaled to the new
+     *         size
+     */
+    private boolean isNormalizedValid() {
+        return normalizedValid && layoutRoot == displayedRoot
+                && layoutStrategy == getStrategy()
+                && layoutVersion == root.getVersion()
+                && layout.isNormalized(displayedRoot);
+    }
+
+    /**
+     * @return true if the last calculated positions can be reused
+     */
+    private boolean isLayoutValid() {
+        return layoutValid && layoutRoot == displayedRoot
+                && layoutStrategy == getStrategy()
+                && layoutWidth == displayedRoot.getWidth()
+                && layoutHeight == displayedRoot.getHeight()
+                && layoutBorder == TreeMapNode.getBorder()
+                && layoutVersion == root.getVersion();
     }
 
     /**
@@ -317,9 +736,25 @@ public class KTreeMap extends Canvas {
      * @param item item to draw
      */
     protected void draw(GC gc, TreeMapNode item) {
+        if ( !intersectsClipping(item)) {
+            // nothing to draw in the region
+            return;
+        }
         if (item.isLeaf()) {
-            gc.setBackground(getColorProvider().getBackground(item.getValue()));
-            gc.fillRectangle(item.getBounds());
+            if (rgbColorProvider != null) {
+                addLeaf(gc, item);
+            } else {
+                fillCell(gc, getColorProvider().getBackground(item.getValue()),
+                        item);
+            }
+            if (pickFilling) {
+                pickBuffer.fill(item);
+            }
+        } else if (item.isCollapsed()) {
+            fillCell(gc, getAggregateBackground(item), item);
+            if (pickFilling) {
+                pickBuffer.fill(item);
+            }
         } else {
             for (TreeMapNode node : item.getChildren()) {
                 draw(gc, node);
@@ -327,9 +762,85 @@ public class KTreeMap extends Canvas {
         }
     }
 
+    /**
+     * fill the bounds of a cell, or add it to the cells of its color or to
+     * the pixels.
+     */
+    private void fillCell(GC gc, Color color, TreeMapNode item) {
+        if (rasterizing) {
+            rasterizer.addCell(item.getX(), item.getY(), item.getWidth(),
+                    item.getHeight(), toRGB(color));
+        } else if (cellBatch != null) {
+            cellBatch.add(toRGB(color), color, item);
+        } else {
+            gc.setBackground(color);
+            gc.fillRectangle(item.getX(), item.getY(), item.getWidth(),
+                    item.getHeight());
+        }
+    }
+
+    /**
+     * add a leaf to the leaves waiting for their packed colors.
+     */
+    private void addLeaf(GC gc, TreeMapNode item) {
+        leafBatch[leafCount++] = item;
+        if (leafCount == LEAF_BATCH_SIZE) {
+            fillLeafBatch(gc);
+        }
+    }
+
+    /**
+     * ask the packed colors of the waiting leaves, and fill their cells.
+     */
+    private void fillLeafBatch(GC gc) {
+        if (leafCount == 0) {
+            return;
+        }
+        rgbColorProvider.getBackgroundRGB(leafBatch, leafCount, leafColors);
+        for (int i = 0; i < leafCount; i++) {
+            TreeMapNode item = leafBatch[i];
+            if (rasterizing) {
+                rasterizer.addCell(item.getX(), item.getY(), item.getWidth(),
+                        item.getHeight(), leafColors[i]);
+            } else {
+                cellBatch.add(leafColors[i], null, item);
+            }
+            leafBatch[i] = null;
+        }
+        leafCount = 0;
+    }
+
+    /**
+     * get the color of a collapsed branch. <BR>
+     * If the color provider is not an ITreeMapAggregateColorProvider, this is
+     * the color of the heaviest leaf of the branch.
+     *
+     * @param item the collapsed branch
+     * @return the background color of the branch
+     */
+    protected Color getAggregateBackground(TreeMapNode item) {
+        if (colorProvider instanceof ITreeMapAggregateColorProvider) {
+            return ((ITreeMapAggregateColorProvider) colorProvider)
+                    .getAggregateBackground(item);
+        }
+        TreeMapNode heaviest = item;
+        while ( !heaviest.isLeaf()) {
+            TreeMapNode next = null;
+            for (TreeMapNode node : heaviest.getChildren()) {
+                if (next == null || node.getWeight() > next.getWeight()) {
+                    next = node;
+                }
+            }
+            heaviest = next;
+        }
+        return colorProvider.getBackground(heaviest.getValue());
+    }
+
     /**
      * write the label in the middle of the item. <BR>
      * You have first to define the font of the Graphics. <BR>
+     * The truncated label and the image of its halo are kept in a cache, so a
+     * label already drawn is copied with a single drawImage. <BR>
      * You may override this method to change the position or the color of the
      * label.
      *
@@ -344,37 +855,16 @@ public class KTreeMap extends Canvas {
 
             int y = (item.getHeight() - fm.getAscent() - fm.getLeading() + fm
                     .getDescent()) / 2;
-            int stringWidth = fm.getAverageCharWidth() * label.length();
-            // the width of the label depends on the font :
-            // if the width of the label is larger than the item
-            if (item.getWidth() - 5 <= stringWidth) {
-                // We have to truncate the label
-                // number of chars who can be writen in the item
-                int nbChar = label.length() * item.getWidth() / stringWidth;
-                if (nbChar > 3) {
-                    // and add "..." at the end
-                    label = label.substring(0, nbChar - 3) + "...";
-                    stringWidth = (nbChar - 1) * fm.getAverageCharWidth();
-                } else {
-                    // if it is not enough large, we display nothing
-                    return;
-                }
+            LabelCache.Label cached = labelCache.get(gc, label, item.getWidth(),
+                    getColorProvider().getForeground(item));
+            if (cached == null || cached.image == null) {
+                // if it is not enough large, we display nothing
+                return;
             }
-            int x = (item.getWidth() - stringWidth) / 2;
+            int x = (item.getWidth() - cached.width) / 2;
 
-            // background in black
-            gc.setForeground(Display.getDefault().getSystemColor(SWT.COLOR_BLACK));
-            gc.drawString(label, item.getX() + x + 1, item.getY() + y + 1, true);
-            gc.drawString(label, item.getX() + x - 1, item.getY() + y + 1, true);
-            gc.drawString(label, item.getX() + x + 1, item.getY() + y - 1, true);
-            gc.drawString(label, item.getX() + x - 1, item.getY() + y - 1, true);
-            gc.drawString(label, item.getX() + x + 1, item.getY() + y, true);
-            gc.drawString(label, item.getX() + x - 1, item.getY() + y, true);
-            gc.drawString(label, item.getX() + x, item.getY() + y + 1, true);
-            gc.drawString(label, item.getX() + x, item.getY() + y - 1, true);
-            // label in foreground color
-            gc.setForeground(getColorProvider().getForeground(item));
-            gc.drawString(label, item.getX() + x, item.getY() + y, true);
+            // label in foreground color over its black halo
+            gc.drawImage(cached.image, item.getX() + x - 1, item.getY() + y - 1);
         }
     }
 
@@ -394,11 +884,85 @@ public class KTreeMap extends Canvas {
             drawLabel(gc, displayedRoot);
         } else {
             for (TreeMapNode node : displayedRoot.getChildren()) {
-                drawLabel(gc, node);
+                if (intersectsClipping(node)) {
+                    drawLabel(gc, node);
+                }
             }
         }
     }
 
+    /**
+     * Draw again the labels over a leaf, after the leaf has been revealed.
+     * <BR>
+     * drawLabels only draws the labels of the children of the displayed root,
+     * in their own bounds : the only one over the leaf is the label of its
+     * ancestor among these children. It is found by going up from the leaf,
+     * so the cost does not depend on the number of children. If you override
+     * drawLabels, you may have to override this method too.
+     *
+     * @param gc Graphics where you have to draw
+     * @param leaf the revealed leaf
+     */
+    protected void drawLabelsOver(GC gc, TreeMapNode leaf) {
+        gc.setFont(getFont());
+        TreeMapNode node = leaf;
+        while (node != null && node != displayedRoot
+                && node.getParent() != displayedRoot) {
+            node = node.getParent();
+        }
+        if (node == displayedRoot) {
+            if (displayedRoot.isLeaf()) {
+                drawLabel(gc, displayedRoot);
+            }
+        } else if (node != null && intersectsClipping(node)) {
+            drawLabel(gc, node);
+        }
+    }
+
+    /**
+     * Test if an item is in the region being drawn. <BR>
+     * The methods which draw the nodes skip the subtrees outside of this
+     * region, so a small redraw costs little.
+     *
+     * @param item TreeMapNode to test
+     * @return true if the item (with the halo of its label) may be drawn in
+     *         the region being drawn
+     */
+    protected boolean intersectsClipping(TreeMapNode item) {
+        if (clipping == null) {
+            return true;
+        }
+        // the halo of the labels is 1 pixel around the text
+        return item.getWidth() >= 0 && item.getHeight() >= 0
+                && item.getX() - 1 < clipping.x + clipping.width
+                && clipping.x < item.getX() + item.getWidth() + 1
+                && item.getY() - 1 < clipping.y + clipping.height
+                && clipping.y < item.getY() + item.getHeight() + 1;
+    }
+
+    /**
+     * get the color which reveals a background color : the same hue, half the
+     * saturation and a brightness halfway to white. <BR>
+     * The lighter color of each background color is kept, and the native
+     * color comes from the color cache of the KTreeMap, so revealing the item
+     * under the mouse allocates no native resource.
+     *
+     * @param color the background color
+     * @return the lighter color
+     */
+    private Color getRevealColor(Color color) {
+        Integer key = Integer.valueOf(toRGB(color));
+        Integer revealColor = revealColors.get(key);
+        if (revealColor == null) {
+            float[] hsb = color.getRGB().getHSB();
+            RGB rgb = new RGB(hsb[0], hsb[1] / 2, (hsb[2] + 1) / 2);
+            revealColor = Integer.valueOf(rgb.red << 16 | rgb.green << 8
+                    | rgb.blue);
+            revealColors.put(key, revealColor);
+        }
+        return colors.getColor(revealColor.intValue());
+    }
+
     /**
      * reveal the item.
      *
@@ -406,20 +970,14 @@ public class KTreeMap extends Canvas {
      * @param item TreeMapNode to reveal
      */
     protected void reveal(GC gc, TreeMapNode item) {
-        if (item.isLeaf()) {
-            if (revealColor != null) {
-                revealColor.dispose();
+        if (item.isLeaf() || item.isCollapsed()) {
+            Color itemColor;
+            if (item.isLeaf()) {
+                itemColor = colorProvider.getBackground(item.getValue());
+            } else {
+                itemColor = getAggregateBackground(item);
             }
-
-            Color itemColor = colorProvider.getBackground(item.getValue());
-            RGB rgb = itemColor.getRGB();
-            float[] fs = java.awt.Color.RGBtoHSB(rgb.red, rgb.green, rgb.blue, null);
-            java.awt.Color cc = new java.awt.Color(java.awt.Color.HSBtoRGB(fs[0],
-                    fs[1] / 2, (fs[2] + 1) / 2));
-            revealColor = new Color(getDisplay(), cc.getRed(), cc.getGreen(), cc
-                    .getBlue());
-
-            gc.setBackground(revealColor);
+            gc.setBackground(getRevealColor(itemColor));
             gc.fillRectangle(item.getX(), item.getY(), item.getWidth(), item
                     .getHeight());
         }
@@ -436,15 +994,24 @@ public class KTreeMap extends Canvas {
             cursorPosition.x = e.x;
             cursorPosition.y = e.y;
             if ( !getDisplayedRoot().getChildren().isEmpty()) {
-                TreeMapNode t = getDisplayedRoot().getActiveLeaf(e.x, e.y);
+                TreeMapNode t;
+                if (pickBufferValid && layoutVersion != root.getVersion()) {
+                    // a weight or a child changed since the buffer was filled
+                    pickBufferValid = false;
+                }
+                if (pickBufferValid) {
+                    t = pickBuffer.getNode(e.x, e.y);
+                } else {
+                    t = getDisplayedRoot().getActiveLeaf(e.x, e.y);
+                }
                 TreeMapNode oldActiveLeaf = getActiveLeaf();
                 if (oldActiveLeaf != null && !oldActiveLeaf.equals(t)) {
-                    Rectangle bounds = oldActiveLeaf.getBounds();
+                    TreeMapRectangle bounds = oldActiveLeaf.getBounds();
                     redraw(bounds.x, bounds.y, bounds.width, bounds.height, false);
                 }
                 setActiveLeaf(t);
                 if (t != null && !t.equals(oldActiveLeaf)) {
-                    Rectangle bounds = t.getBounds();
+                    TreeMapRectangle bounds = t.getBounds();
                     redraw(bounds.x, bounds.y, bounds.width, bounds.height, false);
 
                 }
@@ -457,6 +1024,99 @@ public class KTreeMap extends Canvas {
         }
     }
 
+    /**
+     * Cells of a drawing grouped by color. <BR>
+     * The cells do not overlap, so filling them color by color gives the
+     * same pixels as filling them in the order of the tree. The colors are
+     * found by their packed RGB in an open addressing table, so adding a cell
+     * allocates nothing once its color is known.
+     */
+    private static final class CellBatch {
+        // the cells of each color, in the order of the colors
+        private Cells[] cells = new Cells[16];
+        private int size = 0;
+        // open addressing table of the cells by packed RGB
+        private Cells[] table = new Cells[64];
+
+        void add(int rgb, Color color, TreeMapNode item) {
+            int mask = table.length - 1;
+            int i = hash(rgb) & mask;
+            Cells c;
+            while ((c = table[i]) != null && c.rgb != rgb) {
+                i = (i + 1) & mask;
+            }
+            if (c == null) {
+                c = new Cells(rgb);
+                table[i] = c;
+                if (size == cells.length) {
+                    cells = Arrays.copyOf(cells, size * 2);
+                }
+                cells[size++] = c;
+                if (size * 2 > table.length) {
+                    rehash();
+                }
+            }
+            if (c.color == null) {
+                c.color = color;
+            }
+            c.add(item.getX(), item.getY(), item.getWidth(), item.getHeight());
+        }
+
+        void fill(GC gc, ColorCache colors) {
+            for (int k = 0; k < size; k++) {
+                Cells c = cells[k];
+                gc.setBackground(c.color != null ? c.color : colors
+                        .getColor(c.rgb));
+                for (int i = 0; i < c.size; i += 4) {
+                    gc.fillRectangle(c.bounds[i], c.bounds[i + 1],
+                            c.bounds[i + 2], c.bounds[i + 3]);
+                }
+            }
+        }
+
+        private void rehash() {
+            table = new Cells[table.length * 2];
+            int mask = table.length - 1;
+            for (int k = 0; k < size; k++) {
+                int i = hash(cells[k].rgb) & mask;
+                while (table[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = cells[k];
+            }
+        }
+
+        private static int hash(int rgb) {
+            int h = rgb * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Bounds of the cells of one color.
+     */
+    private static final class Cells {
+        final int rgb;
+        // the color given by the color provider, null to create it from rgb
+        Color color = null;
+        int[] bounds = new int[64];
+        int size = 0;
+
+        Cells(int rgb) {
+            this.rgb = rgb;
+        }
+
+        void add(int x, int y, int width, int height) {
+            if (size + 4 > bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            bounds[size++] = x;
+            bounds[size++] = y;
+            bounds[size++] = width;
+            bounds[size++] = height;
+        }
+    }
+
     /**
      * Class who zoom and unzoom the JTreeMap.
      *
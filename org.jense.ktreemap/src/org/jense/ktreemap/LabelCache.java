@@ -0,0 +1,317 @@
+package org.jense.ktreemap;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Cache of the labels drawn by a KTreeMap. <BR>
+ * A label is drawn in its foreground color with a black halo of 1 pixel
+ * around the text, and truncated with "..." if it is not narrower than the
+ * available width minus 5 pixels. The truncation is found with the widths
+ * kept by TextMetrics. For each truncated text, font and foreground, the
+ * cache keeps an image of the text with its halo and an alpha channel, so a
+ * label already drawn costs a single drawImage, even after a resize as long
+ * as its truncation does not change.
+ * <p>
+ * The least recently used labels are disposed when the cache is full. Each
+ * label holds an Image, so the cache is sized from the number of labels of the
+ * last drawing of the whole KTreeMap, between DEFAULT_SIZE and MAX_SIZE, and
+ * it shrinks back to DEFAULT_SIZE when the displayed root changes.
+ *
+ * @see TextMetrics
+ */
+class LabelCache {
+    /**
+     * default number of labels in the cache
+     */
+    public static final int DEFAULT_SIZE = 1024;
+
+    /**
+     * maximal number of labels in the cache, whatever the number of labels
+     * drawn
+     */
+    public static final int MAX_SIZE = 4096;
+
+    private final Display display;
+
+    private int size;
+
+    // number of labels got since the start of the drawing
+    private int drawn;
+
+    private final Map<Key, Label> labels;
+
+    private final TextMetrics metrics = new TextMetrics(TextMetrics.DEFAULT_SIZE);
+
+    /**
+     * Constructor.
+     *
+     * @param display display of the images
+     * @param size maximal number of labels in the cache
+     */
+    LabelCache(Display display, int size) {
+        this.display = display;
+        this.size = size;
+        this.labels = new LinkedHashMap<Key, Label>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Label> eldest) {
+                if (size() > LabelCache.this.size) {
+                    eldest.getValue().dispose();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the label drawn in a width with the font of the gc.
+     *
+     * @param gc gc where the label is drawn
+     * @param label text of the label
+     * @param width available width
+     * @param foreground color of the text
+     * @return the label, or <code>null</code> if the width is too small
+     */
+    Label get(GC gc, String label, int width, Color foreground) {
+        // if the label is not narrower than the item, it is truncated
+        int length = metrics.getLength(gc, label, width - 5);
+        if (length == 0) {
+            // if it is not enough large, we display nothing
+            return null;
+        }
+        String text = metrics.truncate(label, length);
+        Key key = new Key(text, gc.getFont(), foreground.getRed() << 16
+                | foreground.getGreen() << 8 | foreground.getBlue());
+        Label result = labels.get(key);
+        if (result == null) {
+            int textWidth = metrics.getWidth(gc, label, length);
+            result = new Label(textWidth, createImage(gc.getFont(), text,
+                    textWidth, metrics.getHeight(gc, label), foreground));
+            labels.put(key, result);
+        }
+        drawn++;
+        return result;
+    }
+
+    /**
+     * Start counting the labels of a drawing of the whole KTreeMap.
+     */
+    void startDrawing() {
+        drawn = 0;
+    }
+
+    /**
+     * Size the cache from the number of labels of the drawing, so the next
+     * one finds all of them while the number of images stays bounded.
+     */
+    void endDrawing() {
+        setSize(Math.min(MAX_SIZE, Math.max(DEFAULT_SIZE, drawn)));
+    }
+
+    /**
+     * Shrink the cache back to DEFAULT_SIZE, when the labels drawn change.
+     */
+    void reset() {
+        setSize(DEFAULT_SIZE);
+    }
+
+    private void setSize(int size) {
+        this.size = size;
+        Iterator<Label> iterator = labels.values().iterator();
+        // the least recently used labels first
+        while (labels.size() > size) {
+            iterator.next().dispose();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Dispose the images of the labels and empty the cache.
+     */
+    void clear() {
+        for (Label label : labels.values()) {
+            label.dispose();
+        }
+        labels.clear();
+        metrics.clear();
+    }
+
+    /**
+     * Draw the halo and the text in white on black to get their coverage, and
+     * compose the image of the label with an alpha channel.
+     */
+    private Image createImage(Font font, String text, int width, int height,
+            Color foreground) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        int w = width + 2;
+        int h = height + 2;
+        ImageData halo;
+        ImageData glyphs;
+        Image mask = new Image(display, w, h);
+        GC gc = new GC(mask);
+        try {
+            gc.setFont(font);
+            gc.setBackground(display.getSystemColor(SWT.COLOR_BLACK));
+            gc.setForeground(display.getSystemColor(SWT.COLOR_WHITE));
+            gc.fillRectangle(0, 0, w, h);
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    if (dx != 0 || dy != 0) {
+                        gc.drawString(text, 1 + dx, 1 + dy, true);
+                    }
+                }
+            }
+            halo = mask.getImageData();
+            gc.fillRectangle(0, 0, w, h);
+            gc.drawString(text, 1, 1, true);
+            glyphs = mask.getImageData();
+        } finally {
+            gc.dispose();
+            mask.dispose();
+        }
+
+        // the halo is black, the text is drawn over it
+        ImageData data = new ImageData(w, h, 24, new PaletteData(0xFF0000,
+                0xFF00, 0xFF));
+        int[] haloRow = new int[w];
+        int[] glyphsRow = new int[w];
+        int[] pixels = new int[w];
+        byte[] alphas = new byte[w];
+        int red = foreground.getRed();
+        int green = foreground.getGreen();
+        int blue = foreground.getBlue();
+        for (int y = 0; y < h; y++) {
+            getCoverage(halo, y, haloRow);
+            getCoverage(glyphs, y, glyphsRow);
+            for (int x = 0; x < w; x++) {
+                int t = glyphsRow[x];
+                int a = 255 - (255 - haloRow[x]) * (255 - t) / 255;
+                if (a == 0) {
+                    pixels[x] = 0;
+                } else {
+                    pixels[x] = (red * t / a) << 16 | (green * t / a) << 8
+                            | blue * t / a;
+                }
+                alphas[x] = (byte) a;
+            }
+            data.setPixels(0, y, w, pixels, 0);
+            data.setAlphas(0, y, w, alphas, 0);
+        }
+        return new Image(display, data);
+    }
+
+    /**
+     * Get the green channel (0 to 255) of the pixels of a row of a mask drawn
+     * in gray. The pixels of depth 24 and 32 are read in the bytes of the
+     * ImageData, the others with getPixels. The channel is extracted with the
+     * masks of a direct palette or read in the colors of an indexed one.
+     *
+     * @param mask the mask
+     * @param y the row
+     * @param row the green channel of each pixel of the row
+     */
+    private static void getCoverage(ImageData mask, int y, int[] row) {
+        int w = mask.width;
+        PaletteData palette = mask.palette;
+        if (palette.isDirect && (mask.depth == 24 || mask.depth == 32)) {
+            // the bytes of a pixel are stored from the most significant one
+            int bytes = mask.depth / 8;
+            int offset = y * mask.bytesPerLine;
+            for (int x = 0; x < w; x++) {
+                int pixel = 0;
+                for (int k = 0; k < bytes; k++) {
+                    pixel = pixel << 8 | mask.data[offset++] & 0xFF;
+                }
+                row[x] = pixel;
+            }
+        } else {
+            mask.getPixels(0, y, w, row, 0);
+        }
+        if (palette.isDirect) {
+            int shift = Integer.numberOfTrailingZeros(palette.greenMask);
+            int max = palette.greenMask >>> shift;
+            for (int x = 0; x < w; x++) {
+                row[x] = ((row[x] & palette.greenMask) >>> shift) * 255 / max;
+            }
+        } else {
+            RGB[] colors = palette.colors;
+            for (int x = 0; x < w; x++) {
+                row[x] = colors[row[x]].green;
+            }
+        }
+    }
+
+    /**
+     * A truncated label and its image.
+     */
+    static final class Label {
+        /**
+         * the width used to center the text
+         */
+        final int width;
+        /**
+         * the text with its halo, 1 pixel larger than the text on each side
+         */
+        final Image image;
+
+        Label(int width, Image image) {
+            this.width = width;
+            this.image = image;
+        }
+
+        void dispose() {
+            if (image != null) {
+                image.dispose();
+            }
+        }
+    }
+
+    /**
+     * Key of a label in the cache.
+     */
+    private static final class Key {
+        private final String text;
+        private final Font font;
+        private final int foreground;
+
+        Key(String text, Font font, int foreground) {
+            this.text = text;
+            this.font = font;
+            this.foreground = foreground;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if ( !(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return foreground == other.foreground && text.equals(other.text)
+                    && (font == null ? other.font == null : font
+                            .equals(other.font));
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = text.hashCode();
+            hash = 31 * hash + (font == null ? 0 : font.hashCode());
+            return 31 * hash + foreground;
+        }
+    }
+}
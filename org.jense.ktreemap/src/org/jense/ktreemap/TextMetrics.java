@@ -0,0 +1,184 @@
+package org.jense.ktreemap;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Point;
+
+/**
+ * Cache of the widths of the labels. <BR>
+ * The widths are measured with GC.textExtent once per label and font. A
+ * label truncated to a width ends with "...", and the number of chars kept is
+ * found by a binary search on the widths of the truncated labels, which are
+ * kept for the next widths.
+ * <p>
+ * The least recently used labels are removed when the cache is full.
+ */
+class TextMetrics {
+    /**
+     * default number of labels in the cache
+     */
+    public static final int DEFAULT_SIZE = 4096;
+
+    private static final String ELLIPSIS = "...";
+
+    private final int size;
+
+    private final Map<Key, Widths> widths;
+
+    /**
+     * Constructor.
+     *
+     * @param size maximal number of labels in the cache
+     */
+    TextMetrics(int size) {
+        this.size = size;
+        this.widths = new LinkedHashMap<Key, Widths>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Widths> eldest) {
+                return size() > TextMetrics.this.size;
+            }
+        };
+    }
+
+    /**
+     * @param gc gc with the font of the label
+     * @param label the label
+     * @return the height of the label
+     */
+    int getHeight(GC gc, String label) {
+        return getWidths(gc, label).height;
+    }
+
+    /**
+     * Get the number of chars of the label kept in a width. The label is
+     * truncated if it is not narrower than the width.
+     *
+     * @param gc gc with the font of the label
+     * @param label the label
+     * @param width the available width
+     * @return the number of chars kept before "...", the length of the label
+     *         if it is not truncated, or 0 if not even one char fits
+     */
+    int getLength(GC gc, String label, int width) {
+        Widths w = getWidths(gc, label);
+        if (w.width < width) {
+            return label.length();
+        }
+        // the largest number of chars whose truncated label fits
+        int low = 0;
+        int high = label.length() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (w.getTruncated(gc, label, mid) < width) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param label the label
+     * @param length the number of chars kept, as returned by
+     *          {@link #getLength(GC, String, int)}
+     * @return the label truncated to this number of chars
+     */
+    String truncate(String label, int length) {
+        if (length >= label.length()) {
+            return label;
+        }
+        return label.substring(0, length) + ELLIPSIS;
+    }
+
+    /**
+     * @param gc gc with the font of the label
+     * @param label the label
+     * @param length the number of chars kept
+     * @return the width of the label truncated to this number of chars
+     */
+    int getWidth(GC gc, String label, int length) {
+        Widths w = getWidths(gc, label);
+        if (length >= label.length()) {
+            return w.width;
+        }
+        return w.getTruncated(gc, label, length);
+    }
+
+    /**
+     * Empty the cache.
+     */
+    void clear() {
+        widths.clear();
+    }
+
+    private Widths getWidths(GC gc, String label) {
+        Key key = new Key(label, gc.getFont());
+        Widths w = widths.get(key);
+        if (w == null) {
+            w = new Widths(gc.textExtent(label), label.length());
+            widths.put(key, w);
+        }
+        return w;
+    }
+
+    /**
+     * Widths of a label and of its truncated labels.
+     */
+    private static final class Widths {
+        final int width;
+        final int height;
+        // width of the label truncated to each number of chars, -1 if unknown
+        private final int[] truncated;
+
+        Widths(Point extent, int length) {
+            this.width = extent.x;
+            this.height = extent.y;
+            this.truncated = new int[length];
+            Arrays.fill(truncated, -1);
+        }
+
+        int getTruncated(GC gc, String label, int length) {
+            if (truncated[length] < 0) {
+                truncated[length] = gc.textExtent(label.substring(0, length)
+                        + ELLIPSIS).x;
+            }
+            return truncated[length];
+        }
+    }
+
+    /**
+     * Key of a label in the cache.
+     */
+    private static final class Key {
+        private final String label;
+        private final Font font;
+
+        Key(String label, Font font) {
+            this.label = label;
+            this.font = font;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if ( !(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return label.equals(other.label)
+                    && (font == null ? other.font == null : font
+                            .equals(other.font));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * label.hashCode() + (font == null ? 0 : font.hashCode());
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.jense.ktreemap.core;
+
+/**
+ * Visitor of the nodes of a tree.
+ *
+ * @see TreeMapNode#visitLeavesIntersecting(TreeMapRectangle,
+ *      ITreeMapNodeVisitor)
+ */
+public interface ITreeMapNodeVisitor {
+    /**
+     * visit a node.
+     *
+     * @param node the node
+     */
+    public void visit(TreeMapNode node);
+}
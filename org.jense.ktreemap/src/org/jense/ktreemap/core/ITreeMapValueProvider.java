@@ -0,0 +1,16 @@
+package org.jense.ktreemap.core;
+
+/**
+ * Provider of the double values of the nodes.
+ *
+ * @see TreeMapNode#getValueStatistics(ITreeMapValueProvider)
+ */
+public interface ITreeMapValueProvider {
+    /**
+     * Get the double value of the value
+     *
+     * @param value value of the node (TreeMapNode.getValue())
+     * @return the double value of the value
+     */
+    public double getDoubleValue(Object value);
+}
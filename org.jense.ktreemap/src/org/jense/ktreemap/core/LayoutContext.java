@@ -0,0 +1,77 @@
+package org.jense.ktreemap.core;
+
+/**
+ * State of one calculation of the positions of a tree.
+ * <p>
+ * The border between two nodes decreases with the depth of the tree. The
+ * strategies keep the border of the current level in the context instead of
+ * changing the global TreeMapNode border, so a strategy has no state of its
+ * own : the same instance may be used by several KTreeMap, or by several
+ * threads for different trees.
+ * <p>
+ * A context must not be shared between two concurrent calculations.
+ *
+ * @see SplitStrategy#calculatePositions(TreeMapNode, LayoutContext)
+ */
+public class LayoutContext {
+    private int border;
+
+    /**
+     * Constructor with the global border of the TreeMapNode.
+     */
+    public LayoutContext() {
+        this(TreeMapNode.getBorder());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param border max border between two nodes of the first level
+     */
+    public LayoutContext(int border) {
+        this.border = border;
+    }
+
+    /**
+     * get the border between two nodes of the current level.
+     *
+     * @return the border
+     */
+    public int getBorder() {
+        return border;
+    }
+
+    /**
+     * set the border between two nodes of the current level.
+     *
+     * @param border the border
+     */
+    public void setBorder(int border) {
+        this.border = border;
+    }
+
+    /**
+     * get the inset of the children of a branch at the current level.
+     *
+     * @return the inset
+     */
+    public int getBranchInset() {
+        return getBranchInset(border);
+    }
+
+    /**
+     * get the inset of the children of a branch. <BR>
+     * It is 2 if the border is greater than 1, the border else.
+     *
+     * @param border the border of the level of the branch
+     * @return the inset
+     */
+    static int getBranchInset(int border) {
+        if (border > 1) {
+            return 2;
+        } else if (border == 1) {
+            return 1;
+        }
+        return 0;
+    }
+}
@@ -1,4 +1,4 @@
-package org.jense.ktreemap;
+package org.jense.ktreemap.core;
 
 import java.util.List;
 
@@ -26,16 +26,22 @@ public class SplitByNumber extends SplitStrategy {
   
   @Override
   public double sumWeight(List<TreeMapNode> v) {
-    //all the elements must have the same weight
+    //all the leaves must have the same weight
     double weight = 0.0;
     for (TreeMapNode node : v) {
-      if (node.isLeaf()) {
-        weight += 1;
-      } else {
-        weight += this.sumWeight(node.getChildren());
-      }
+      weight += node.getLeafCount();
     }
     return weight;
   }
 
+  @Override
+  protected double getWeight(TreeMapNode node) {
+    return node.getLeafCount();
+  }
+
+  @Override
+  protected int splitRange(TreeMapLayout layout, int from, int to) {
+    return from + (to - from) / 2;
+  }
+
 }
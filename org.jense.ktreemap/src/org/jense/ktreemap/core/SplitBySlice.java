@@ -0,0 +1,148 @@
+/*
+ * Created on 3 nov. 2005
+ */
+package org.jense.ktreemap.core;
+
+import java.util.List;
+
+/**
+ * Split the treemap by slice
+ * 
+ * @author Laurent DUTHEIL
+ */
+public class SplitBySlice extends SplitStrategy {
+
+  /**
+   * Calculate the dimension of the elements of the Vector.
+   * @param bounds bounds of the KTreeMap
+   * @param children elements to split in the dimensions before
+   * @param sumWeight sum of the weights
+   */
+  public static void splitInSlice(TreeMapRectangle bounds, List<TreeMapNode> children,
+      double sumWeight) {
+    int offset = 0;
+    boolean vertical = bounds.height > bounds.width;
+
+    for (TreeMapNode node : children) {
+      if (vertical) {
+        node.setX(bounds.x);
+        node.setWidth(bounds.width);
+        node.setY(bounds.y + offset);
+        node.setHeight((int)Math.round(bounds.height * node.getWeight()
+            / sumWeight));
+        offset = offset + node.getHeight();
+      } else {
+        node.setX(bounds.x + offset);
+        node.setWidth((int)Math.round(bounds.width * node.getWeight()
+            / sumWeight));
+        node.setY(bounds.y);
+        node.setHeight(bounds.height);
+        offset = offset + node.getWidth();
+      }
+    }
+
+    // Because of the Math.round(), we adjust the last element to fit the
+    // correctly the JTreeMap
+    if (!children.isEmpty()) {
+      TreeMapNode node = children.get(children.size() - 1);
+      if (vertical && bounds.height != offset) {
+        node.setHeight(node.getHeight() - offset + bounds.height);
+      } else if (!vertical && bounds.width != offset) {
+        node.setWidth(node.getWidth() - offset + bounds.width);
+      }
+    }
+  }
+
+  /**
+   * Calculate the dimension of the slots of a TreeMapLayout.
+   * @param layout the layout
+   * @param from first slot
+   * @param to end of the range
+   * @param sumWeight sum of the weights
+   * @param x x-coordinate of the bounds
+   * @param y y-coordinate of the bounds
+   * @param width width of the bounds
+   * @param height height of the bounds
+   */
+  public static void splitInSlice(TreeMapLayout layout, int from, int to,
+      double sumWeight, int x, int y, int width, int height) {
+    int offset = 0;
+    int size = 0;
+    boolean vertical = height > width;
+
+    for (int i = from; i < to; i++) {
+      if (vertical) {
+        size = (int)Math.round(height * layout.getWeight(i) / sumWeight);
+        layout.setBounds(i, x, y + offset, width, size);
+      } else {
+        size = (int)Math.round(width * layout.getWeight(i) / sumWeight);
+        layout.setBounds(i, x + offset, y, size, height);
+      }
+      offset = offset + size;
+    }
+
+    // Because of the Math.round(), we adjust the last element to fit the
+    // correctly the JTreeMap
+    if (from < to) {
+      if (vertical && height != offset) {
+        layout.setBounds(to - 1, x, y + offset - size, width, size - offset
+            + height);
+      } else if (!vertical && width != offset) {
+        layout.setBounds(to - 1, x + offset - size, y, size - offset + width,
+            height);
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jense.swing.jtreemap.SplitStrategy#splitElements(java.util.Vector,
+   *      java.util.Vector, java.util.Vector)
+   */
+  @Override
+  public void splitElements(List<TreeMapNode> v, List<TreeMapNode> v1,
+      List<TreeMapNode> v2) {
+  // ignore
+
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jense.swing.jtreemap.SplitStrategy#calculatePositionsRec(int, int,
+   *      int, int, double, java.util.Vector)
+   */
+  @Override
+  protected void calculatePositionsRec(LayoutContext context,
+      TreeMapRectangle bounds, double weight0, List<TreeMapNode> v) {
+
+    SplitBySlice.splitInSlice(bounds, v, weight0);
+
+    int border = context.getBorder();
+    for (TreeMapNode node : v) {
+      if (node.isLeaf()) {
+        node.setX(node.getX() + border);
+        node.setY(node.getY() + border);
+        node.setHeight(node.getHeight() - border);
+        node.setWidth(node.getWidth() - border);
+      } else {
+        // if this is not a leaf, calculation for the children
+        int bSub = context.getBranchInset();
+        context.setBorder(border - bSub);
+        TreeMapRectangle newBounds = new TreeMapRectangle(node.getX() + bSub, node.getY()
+            + bSub, node.getWidth() - bSub, node.getHeight() - bSub);
+        calculatePositionsRec(context, newBounds, node.getWeight(), node
+            .getChildren());
+        context.setBorder(border);
+      }
+    }
+
+  }
+
+  @Override
+  protected void layoutChildren(TreeMapLayout layout, int from, int to,
+      double weight0, int x, int y, int width, int height) {
+    SplitBySlice.splitInSlice(layout, from, to, weight0, x, y, width, height);
+  }
+}
@@ -0,0 +1,60 @@
+package org.jense.ktreemap.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Strategy who split the elements in 2 groups of equivalent weight.
+ * <p>
+ * The elements are first sorted by descending weight. Then they are splitted in
+ * 2 groups of equivalent weight.
+ * <p>
+ * The heaviest elements are on the top left of the KTreeMap. The lightest
+ * elements are on the bottom right of the KTreeMap
+ * 
+ * @author Laurent Dutheil
+ */
+
+public class SplitBySortedWeight extends SplitStrategy {
+  private static final SplitByWeight SPLIT_BY_WEIGHT = new SplitByWeight();
+
+  @Override
+  public void splitElements(List<TreeMapNode> list, List<TreeMapNode> group1,
+      List<TreeMapNode> group2) {
+    List<TreeMapNode> sorted = list;
+    // the groups of a sorted list stay sorted, so we sort only the new lists
+    if (!isSorted(list)) {
+      sorted = new ArrayList<TreeMapNode>(list);
+      sortList(sorted);
+    }
+    SPLIT_BY_WEIGHT.splitElements(sorted, group1, group2);
+  }
+
+  @Override
+  protected void layoutChildren(TreeMapLayout layout, int from, int to,
+      double weight0, int x, int y, int width, int height) {
+    // the groups of a sorted range stay sorted, so we sort only once
+    layout.sortByDescendingWeight(from, to);
+    layout.accumulateWeights(from, to);
+    bisect(layout, from, to, weight0, x, y, width, height, true);
+  }
+
+  @Override
+  protected int splitRange(TreeMapLayout layout, int from, int to) {
+    return SplitByWeight.splitByHalfWeight(layout.cumulative, from, to,
+        layout.cumulativeBefore(from));
+  }
+
+  private static boolean isSorted(List<TreeMapNode> list) {
+    double previous = Double.POSITIVE_INFINITY;
+    for (TreeMapNode node : list) {
+      double weight = node.getWeight();
+      if (weight > previous) {
+        return false;
+      }
+      previous = weight;
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,80 @@
+package org.jense.ktreemap.core;
+
+import java.util.List;
+
+/**
+ * Strategy who split the elements in 2 groups of equivalent weight.
+ * 
+ * @author Laurent Dutheil
+ */
+
+public class SplitByWeight extends SplitStrategy {
+
+  @Override
+  public void splitElements(List<TreeMapNode> list, List<TreeMapNode> group1,
+      List<TreeMapNode> group2) {
+    if (list.isEmpty()) {
+      return;
+    }
+    double[] cumulative = new double[list.size()];
+    double sum = 0.0;
+    for (int i = 0; i < cumulative.length; i++) {
+      sum += list.get(i).getWeight();
+      cumulative[i] = sum;
+    }
+    int index = splitByHalfWeight(cumulative, 0, cumulative.length, 0.0);
+    group1.addAll(list.subList(0, index));
+    group2.addAll(list.subList(index, list.size()));
+  }
+
+  @Override
+  protected void layoutChildren(TreeMapLayout layout, int from, int to,
+      double weight0, int x, int y, int width, int height) {
+    // the slots are not reordered, the weights are summed only once
+    layout.accumulateWeights(from, to);
+    bisect(layout, from, to, weight0, x, y, width, height, true);
+  }
+
+  @Override
+  protected int splitRange(TreeMapLayout layout, int from, int to) {
+    return splitByHalfWeight(layout.cumulative, from, to,
+        layout.cumulativeBefore(from));
+  }
+
+  /**
+   * Find the split which is the nearest of the middle of the weight, by
+   * binary search in the cumulative sums of the weights.
+   * 
+   * @param cumulative cumulative sums of the weights
+   * @param from first element
+   * @param to end of the range
+   * @param base cumulative sum before from
+   * @return the first element of the second group
+   */
+  static int splitByHalfWeight(double[] cumulative, int from, int to,
+      double base) {
+    double halfWeight = (cumulative[to - 1] - base) / 2;
+    // the first element whose add pass the middle of total weight
+    int low = from;
+    int high = to;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (cumulative[mid] - base >= halfWeight) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    if (low == to) {
+      return to;
+    }
+    double memWeight = low == from ? 0.0 : cumulative[low - 1] - base;
+    // we look at the finest split (the nearest of the middle of weight)
+    if ((halfWeight - memWeight) > ((cumulative[low] - base) - halfWeight)) {
+      return low + 1;
+    }
+    // we must have at least 1 element in the first group
+    return low == from ? from + 1 : low;
+  }
+
+}
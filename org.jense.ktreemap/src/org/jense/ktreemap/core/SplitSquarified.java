@@ -0,0 +1,258 @@
+/*
+ * Created on 3 nov. 2005
+ */
+package org.jense.ktreemap.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Squarified split strategy
+ * <p>
+ * The elements are sorted once by descending weight. Then they are put in
+ * rows along the shortest side of the remaining bounds, as long as the worst
+ * aspect ratio of the row improves (Bruls, Huizing, van Wijk). The sums and
+ * the extreme weights of the row are updated at each element, so the layout
+ * of n children costs O(n log n).
+ *
+ * @author Laurent DUTHEIL
+ */
+public class SplitSquarified extends SplitStrategy {
+  // side of the bounds used by splitElements
+  private static final int UNIT_SIDE = 1000;
+
+  /**
+   * Split the elements sorted by descending weight in the first row (group1)
+   * and the rest (group2). The row is chosen for square bounds, the layout
+   * itself uses the real bounds.
+   */
+  @Override
+  public void splitElements(List<TreeMapNode> list, List<TreeMapNode> group1,
+      List<TreeMapNode> group2) {
+    if (list.isEmpty()) {
+      return;
+    }
+    int end = rowEnd(list, 0, sumWeight(list), UNIT_SIDE, UNIT_SIDE);
+    group1.addAll(list.subList(0, end));
+    group2.addAll(list.subList(end, list.size()));
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jense.swing.jtreemap.SplitStrategy#calculatePositionsRec(int, int,
+   *      int, int, double, java.util.Vector)
+   */
+  @Override
+  protected void calculatePositionsRec(LayoutContext context,
+      TreeMapRectangle bounds, double weight0, List<TreeMapNode> children) {
+    List<TreeMapNode> listClone = new ArrayList<TreeMapNode>(children);
+
+    sortList(listClone);
+
+    int x0 = bounds.x;
+    int y0 = bounds.y;
+    int w0 = bounds.width;
+    int h0 = bounds.height;
+    double remaining = sumWeight(listClone);
+    int start = 0;
+    while (start < listClone.size()) {
+      int end = rowEnd(listClone, start, remaining, w0, h0);
+      List<TreeMapNode> row = listClone.subList(start, end);
+      double rowWeight = sumWeight(row);
+      int thickness = thickness(end == listClone.size(), rowWeight, remaining,
+          w0, h0);
+      TreeMapRectangle rowBounds;
+      if (w0 < h0) {
+        rowBounds = new TreeMapRectangle(x0, y0, w0, thickness);
+        y0 += thickness;
+        h0 -= thickness;
+      } else {
+        rowBounds = new TreeMapRectangle(x0, y0, thickness, h0);
+        x0 += thickness;
+        w0 -= thickness;
+      }
+      SplitBySlice.splitInSlice(rowBounds, row, rowWeight);
+      calculateChildren(context, row);
+
+      // the next rows in the remaining bounds
+      remaining -= rowWeight;
+      start = end;
+    }
+  }
+
+  @Override
+  protected void layoutChildren(TreeMapLayout layout, int from, int to,
+      double weight0, int x, int y, int width, int height) {
+    layout.sortByDescendingWeight(from, to);
+
+    int x0 = x;
+    int y0 = y;
+    int w0 = width;
+    int h0 = height;
+    double remaining = layout.sumWeight(from, to);
+    int start = from;
+    while (start < to) {
+      int end = rowEnd(layout, start, to, remaining, w0, h0);
+      double rowWeight = layout.sumWeight(start, end);
+      int thickness = thickness(end == to, rowWeight, remaining, w0, h0);
+      if (w0 < h0) {
+        SplitBySlice.splitInSlice(layout, start, end, rowWeight, x0, y0, w0,
+            thickness);
+        y0 += thickness;
+        h0 -= thickness;
+      } else {
+        SplitBySlice.splitInSlice(layout, start, end, rowWeight, x0, y0,
+            thickness, h0);
+        x0 += thickness;
+        w0 -= thickness;
+      }
+      remaining -= rowWeight;
+      start = end;
+    }
+  }
+
+  /**
+   * Find the end of the row which begins at start. The row takes the
+   * elements as long as its worst aspect ratio improves.
+   *
+   * @param list elements sorted by descending weight
+   * @param start first element of the row
+   * @param remaining sum of the weights from start to the end of the list
+   * @param width width of the remaining bounds
+   * @param height height of the remaining bounds
+   * @return the index after the last element of the row
+   */
+  private static int rowEnd(List<TreeMapNode> list, int start, double remaining,
+      int width, int height) {
+    double scale = (double)width * height / remaining;
+    double side = Math.min(width, height);
+    double sideSquare = side * side;
+    double max = list.get(start).getWeight() * scale;
+    double sum = max;
+    double worst = worst(sideSquare, sum, max, max);
+    int end = start + 1;
+    while (end < list.size()) {
+      double area = list.get(end).getWeight() * scale;
+      double next = worst(sideSquare, sum + area, max, area);
+      if (next > worst) {
+        break;
+      }
+      worst = next;
+      sum += area;
+      end++;
+    }
+    return end;
+  }
+
+  /**
+   * Find the end of the row which begins at the slot start.
+   *
+   * @param layout the layout, with slots sorted by descending weight
+   * @param start first slot of the row
+   * @param to end of the range
+   * @param remaining sum of the weights from start to to
+   * @param width width of the remaining bounds
+   * @param height height of the remaining bounds
+   * @return the slot after the last slot of the row
+   */
+  private static int rowEnd(TreeMapLayout layout, int start, int to,
+      double remaining, int width, int height) {
+    double scale = (double)width * height / remaining;
+    double side = Math.min(width, height);
+    double sideSquare = side * side;
+    double max = layout.getWeight(start) * scale;
+    double sum = max;
+    double worst = worst(sideSquare, sum, max, max);
+    int end = start + 1;
+    while (end < to) {
+      double area = layout.getWeight(end) * scale;
+      double next = worst(sideSquare, sum + area, max, area);
+      if (next > worst) {
+        break;
+      }
+      worst = next;
+      sum += area;
+      end++;
+    }
+    return end;
+  }
+
+  /**
+   * The thickness of a row along the longest side. The last row takes all
+   * the remaining bounds.
+   */
+  private static int thickness(boolean last, double rowWeight,
+      double remaining, int width, int height) {
+    int length = width < height ? height : width;
+    if (last) {
+      return length;
+    }
+    // the rounding of remaining may give a ratio slightly greater than 1
+    return Math.min(length, (int)Math.round(length * rowWeight / remaining));
+  }
+
+  /**
+   * The worst aspect ratio of a row (areas of the elements).
+   *
+   * @param sideSquare square of the side the row is laid along
+   * @param sum sum of the areas of the row
+   * @param max largest area of the row
+   * @param min smallest area of the row
+   * @return the worst aspect ratio
+   */
+  private static double worst(double sideSquare, double sum, double max,
+      double min) {
+    double sumSquare = sum * sum;
+    return Math.max(sideSquare * max / sumSquare, sumSquare
+        / (sideSquare * min));
+  }
+
+  /**
+   * Execute the recurence for the children of the elements of the vector.<BR>
+   * Add also the borders if necessary
+   *
+   * @param context the context of the calculation
+   * @param v Vector with the elements to calculate
+   */
+  private void calculateChildren(LayoutContext context, List<TreeMapNode> v) {
+    int border = context.getBorder();
+    for (TreeMapNode node : v) {
+      if (node.isLeaf()) {
+        node.setX(node.getX() + border);
+        node.setY(node.getY() + border);
+        int w = node.getWidth() - border;
+        if (w < 0) {
+          w = 0;
+        }
+        int h = node.getHeight() - border;
+        if (h < 0) {
+          h = 0;
+        }
+        node.setHeight(h);
+        node.setWidth(w);
+      } else {
+        // if this is not a leaf, calculation for the children
+        int bSub = context.getBranchInset();
+
+        int w = node.getWidth() - bSub;
+        if (w < 0) {
+          w = 0;
+        }
+        int h = node.getHeight() - bSub;
+        if (h < 0) {
+          h = 0;
+        }
+
+        context.setBorder(border - bSub);
+        TreeMapRectangle newBounds = new TreeMapRectangle(node.getX() + bSub, node.getY()
+            + bSub, w, h);
+        calculatePositionsRec(context, newBounds, node.getWeight(),
+            node.getChildren());
+        context.setBorder(border);
+      }
+
+    }
+  }
+
+}
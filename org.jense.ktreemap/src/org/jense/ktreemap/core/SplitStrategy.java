@@ -0,0 +1,302 @@
+package org.jense.ktreemap.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Abtract class with the method which split the elements of a KTreeMap.
+ * <p>
+ * The split is done by dichotomy. We split the elements in 2 groups with a
+ * defined strategy (for example : take care of the weight of the elements)
+ * <p>
+ * 
+ * @author Laurent Dutheil
+ */
+
+public abstract class SplitStrategy {
+  private static final Comparator<TreeMapNode> DESCENDING_WEIGHT = new Comparator<TreeMapNode>() {
+    @Override
+    public int compare(TreeMapNode o1, TreeMapNode o2) {
+      return Double.compare(o2.getWeight(), o1.getWeight());
+    }
+  };
+
+  /**
+   * calculate the positions for all the elements of the root, with the
+   * border of the TreeMapNode.
+   * 
+   * @param root the root to calculate
+   */
+  public void calculatePositions(TreeMapNode root) {
+    calculatePositions(root, new LayoutContext());
+  }
+
+  /**
+   * calculate the positions for all the elements of the root.
+   * <p>
+   * The state of the calculation is kept in the context, so the strategy may
+   * calculate several trees at the same time.
+   * 
+   * @param root the root to calculate
+   * @param context the context of this calculation
+   */
+  public void calculatePositions(TreeMapNode root, LayoutContext context) {
+    if (root == null) {
+      return;
+    }
+
+    List<TreeMapNode> children = root.getChildren();
+    if (children != null) {
+      calculatePositionsRec(context, root.getBounds(), this.sumWeight(children),
+          children);
+    }
+  }
+
+  /**
+   * split the elements of a JTreeMap.
+   * 
+   * @param v Vector with the elements to split (arg IN)
+   * @param v1 first Vector of the split (arg OUT)
+   * @param v2 second Vector of the split (arg OUT)
+   */
+  public abstract void splitElements(List<TreeMapNode> v, List<TreeMapNode> v1,
+      List<TreeMapNode> v2);
+
+  /**
+   * Sum the weight of elements. <BR>
+   * You can override this method if you want to apply a coef on the weights or
+   * to cancel the effect of weight on the strategy.
+   * 
+   * @param children List with the elements to sum
+   * @return the sum of the weight of elements
+   */
+  public double sumWeight(List<TreeMapNode> children) {
+    double d = 0.0;
+    if (children != null) {
+      for (TreeMapNode node : children) {
+        d += node.getWeight();
+      }
+    }
+    return d;
+  }
+
+  /**
+   * Return the weight of a node for this strategy. <BR>
+   * It is the weight used by the TreeMapLayout. If you override sumWeight, you
+   * have to override this method too.
+   * 
+   * @param node the node
+   * @return the weight of the node
+   */
+  protected double getWeight(TreeMapNode node) {
+    return node.getWeight();
+  }
+
+  /**
+   * Calculate the bounds of the slots of a TreeMapLayout. <BR>
+   * The children of the nodes are calculated by the layout afterwards.
+   * <p>
+   * The default implementation splits the slots by dichotomy with
+   * {@link #splitRange(TreeMapLayout, int, int)}.
+   * 
+   * @param layout the layout
+   * @param from first slot
+   * @param to end of the range
+   * @param weight0 sum of the weights of the slots
+   * @param x x-coordinate of the bounds
+   * @param y y-coordinate of the bounds
+   * @param width width of the bounds
+   * @param height height of the bounds
+   */
+  protected void layoutChildren(TreeMapLayout layout, int from, int to,
+      double weight0, int x, int y, int width, int height) {
+    bisect(layout, from, to, weight0, x, y, width, height, false);
+  }
+
+  /**
+   * Split the slots of a TreeMapLayout in 2 groups. <BR>
+   * The first group is [from, index[, the second [index, to[. The slots may
+   * be reordered in the range.
+   * <p>
+   * The default implementation uses
+   * {@link #splitElements(List, List, List)}, the strategies of KTreeMap
+   * override it to split without allocation.
+   * 
+   * @param layout the layout
+   * @param from first slot
+   * @param to end of the range
+   * @return the first slot of the second group
+   */
+  protected int splitRange(TreeMapLayout layout, int from, int to) {
+    List<TreeMapNode> list = new ArrayList<TreeMapNode>(to - from);
+    for (int i = from; i < to; i++) {
+      list.add(layout.getNode(i));
+    }
+    List<TreeMapNode> group1 = new ArrayList<TreeMapNode>();
+    List<TreeMapNode> group2 = new ArrayList<TreeMapNode>();
+    this.splitElements(list, group1, group2);
+    int index = from;
+    for (TreeMapNode node : group1) {
+      layout.setNode(index++, node);
+    }
+    for (TreeMapNode node : group2) {
+      layout.setNode(index++, node);
+    }
+    return from + group1.size();
+  }
+
+  /**
+   * Split the slots by dichotomy.
+   * 
+   * @param accumulated true if the weights of the range are accumulated and
+   *          splitRange does not reorder the slots : the weights of the
+   *          groups are then read in the cumulative sums
+   */
+  void bisect(TreeMapLayout layout, int from, int to, double weight0, int x,
+      int y, int width, int height, boolean accumulated) {
+    // the second group is calculated in the loop, so a split which takes
+    // one element at a time does not deepen the recursion
+    while (to - from > 1) {
+      int mid = splitRange(layout, from, to);
+      double weight1, weight2;
+      if (accumulated) {
+        double[] cumulative = layout.cumulative;
+        double base = layout.cumulativeBefore(from);
+        weight1 = cumulative[mid - 1] - base;
+        weight2 = cumulative[to - 1] - cumulative[mid - 1];
+      } else {
+        weight1 = layout.sumWeight(from, mid);
+        weight2 = layout.sumWeight(mid, to);
+      }
+
+      int w1, w2, h1, h2;
+      int x2, y2;
+      // if width is greater than height, we split the width
+      if (width > height) {
+        w1 = (int)(width * weight1 / weight0);
+        w2 = width - w1;
+        h1 = height;
+        h2 = height;
+        x2 = x + w1;
+        y2 = y;
+      } else {
+        // else we split the height
+        w1 = width;
+        w2 = width;
+        h1 = (int)(height * weight1 / weight0);
+        h2 = height - h1;
+        x2 = x;
+        y2 = y + h1;
+      }
+      bisect(layout, from, mid, weight1, x, y, w1, h1, accumulated);
+      from = mid;
+      weight0 = weight2;
+      x = x2;
+      y = y2;
+      width = w2;
+      height = h2;
+    }
+    if (from < to) {
+      layout.setBounds(from, x, y, width, height);
+    }
+  }
+
+  /**
+   * calculate the positions of the elements in the bounds.
+   * 
+   * @param context the context of the calculation
+   * @param bounds the bounds of the elements
+   * @param weight0 the sum of the weights of the elements
+   * @param children the elements
+   */
+  protected void calculatePositionsRec(LayoutContext context,
+      TreeMapRectangle bounds, double weight0, List<TreeMapNode> children) {
+    int border = context.getBorder();
+
+    // if the Vector contains only one element
+    if (children.size() == 1) {
+      TreeMapNode f = children.get(0);
+      if (f.isLeaf()) {
+        // if this is a leaf, we display with the border
+        int w = bounds.width - border;
+        if (w < 0) {
+          w = 0;
+        }
+        int h = bounds.height - border;
+        if (h < 0) {
+          h = 0;
+        }
+        f.setPosition(bounds.x + border, bounds.y + border);
+        f.setSize(w, h);
+      } else {
+        // if this is not a leaf, calculation for the children
+        f.setPosition(bounds.x, bounds.y);
+        f.setSize(bounds.width, bounds.height);
+
+        int bSub = context.getBranchInset();
+
+        int w = bounds.width - bSub;
+        if (w < 0) {
+          w = 0;
+        }
+        int h = bounds.height - bSub;
+        if (h < 0) {
+          h = 0;
+        }
+
+        context.setBorder(border - bSub);
+        TreeMapRectangle newBounds = new TreeMapRectangle(bounds.x + bSub, bounds.y + bSub,
+            w, h);
+        calculatePositionsRec(context, newBounds, weight0, f.getChildren());
+        context.setBorder(border);
+      }
+    } else {
+      // if there is more than one element
+      // we split the Vector according to the selected strategy
+      List<TreeMapNode> group1 = new ArrayList<TreeMapNode>();
+      List<TreeMapNode> group2 = new ArrayList<TreeMapNode>();
+      double weight1, weight2; // weights of the groups
+      this.splitElements(children, group1, group2);
+      weight1 = this.sumWeight(group1);
+      weight2 = this.sumWeight(group2);
+
+      int w1, w2, h1, h2;
+      int x2, y2;
+      // if width is greater than height, we split the width
+      if (bounds.width > bounds.height) {
+        w1 = (int)(bounds.width * weight1 / weight0);
+        w2 = bounds.width - w1;
+        h1 = bounds.height;
+        h2 = bounds.height;
+        x2 = bounds.x + w1;
+        y2 = bounds.y;
+      } else {
+        // else we split the height
+        w1 = bounds.width;
+        w2 = bounds.width;
+        h1 = (int)(bounds.height * weight1 / weight0);
+        h2 = bounds.height - h1;
+        x2 = bounds.x;
+        y2 = bounds.y + h1;
+      }
+      // calculation for the new two Vectors
+      TreeMapRectangle bounds1 = new TreeMapRectangle(bounds.x, bounds.y, w1, h1);
+      calculatePositionsRec(context, bounds1, weight1, group1);
+      TreeMapRectangle bounds2 = new TreeMapRectangle(x2, y2, w2, h2);
+      calculatePositionsRec(context, bounds2, weight2, group2);
+    }
+  }
+
+  /**
+   * Sort the elements by descending weight.
+   * 
+   * @param v Vector with the elements to be sorted
+   */
+  protected void sortList(List<TreeMapNode> v) {
+    // the sort is stable : the elements of same weight keep their order
+    Collections.sort(v, DESCENDING_WEIGHT);
+  }
+
+}
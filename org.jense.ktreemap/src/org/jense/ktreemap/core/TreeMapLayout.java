@@ -0,0 +1,941 @@
+package org.jense.ktreemap.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Layout engine which stores the positions of the nodes of a tree in
+ * primitive columns.
+ * <p>
+ * The nodes are numbered in breadth-first order, so the children of a node
+ * always have consecutive ordinals. The x, y, width and height of each node
+ * are kept in <code>int[]</code> columns indexed by these ordinals, and the
+ * getters of an indexed TreeMapNode read from them.
+ * <p>
+ * The columns are allocated when the tree is indexed. A relayout of a tree
+ * whose structure did not change does not allocate any object.
+ * <p>
+ * The split strategies work on ranges of indexes. Each index of a range is a
+ * slot which refers to a child of the parent being laid out; the strategies
+ * may permute the slots of their range (for example to sort them by weight)
+ * but never touch the slots of an other range.
+ * <p>
+ * Once a parent is calculated, the subtrees of its children are independent.
+ * With a ForkJoinPool, the subtrees bigger than the parallel threshold are
+ * calculated in parallel. The result is the same as the sequential layout,
+ * as long as the strategy does not keep state between two calls of its
+ * layout methods (this is the case of the strategies of KTreeMap).
+ * <p>
+ * With a minimal cell size, the branches whose bounds are smaller are not
+ * calculated further : they are collapsed and drawn as a single cell, like a
+ * leaf. The work is then bounded by the number of visible cells rather than
+ * by the number of nodes.
+ * <p>
+ * The positions can also be calculated once in normalized coordinates : each
+ * node keeps its bounds relative to the bounds of its parent, as fractions in
+ * [0, 1]. A change of the size of the displayed root then only scales these
+ * fractions to pixels, in one pass over the visible nodes, without calling
+ * the strategy. The proportions of the cells follow the new size. The
+ * normalized calculation collapses the branches too small at the size of the
+ * calculation; it has to be done again when a grow makes one of them large
+ * enough to show its children.
+ * <p>
+ * The hit testing of TreeMapNode goes through the layout. The children of a
+ * big parent are put in a uniform grid over the bounds of the parent, built
+ * at the first lookup after a layout : finding the child under a point then
+ * only tests the few children of one cell of the grid.
+ *
+ * @see SplitStrategy#layoutChildren(TreeMapLayout, int, int, double, int, int,
+ *      int, int)
+ */
+public class TreeMapLayout {
+    /**
+     * Default minimal number of nodes of a subtree calculated in its own task.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 8192;
+    // longest side of the bounds of the normalized calculation
+    private static final int NORMALIZED_SIDE = 1 << 20;
+    // minimal number of children of a parent indexed by a grid
+    private static final int GRID_MIN_CHILDREN = 64;
+
+    private final TreeMapNode root;
+    private TreeMapNode[] nodes;
+    private int[] firstChild;
+    private int[] childCount;
+    // number of nodes of the subtrees
+    private int[] subtreeSize;
+    // branches too small to calculate their children
+    private boolean[] collapsed;
+    private int minCellSize = 0;
+    private double[] weight;
+    // sums of the weights from the start of the last accumulated range
+    double[] cumulative;
+    // first slot of the range of a parent
+    private boolean[] rangeStart;
+    // permutation of the ordinals, one range per parent
+    private int[] order;
+    // weights of the slots and scratch buffers of the merge sort
+    private double[] keys;
+    private double[] scratchKeys;
+    private int[] scratch;
+    int[] x;
+    int[] y;
+    int[] width;
+    int[] height;
+    // bounds of the nodes relative to the bounds of their parent
+    private double[] left;
+    private double[] top;
+    private double[] right;
+    private double[] bottom;
+    // node whose descendants have normalized positions, -1 if none
+    private int normalizedParent = -1;
+    // branches collapsed by the normalized calculation, without positions
+    // for their children
+    private boolean[] culled;
+    // size and minimal cell size of the normalized calculation
+    private int normalizedWidth;
+    private int normalizedHeight;
+    private int normalizedMinCellSize;
+    // true if the last scaling has found a culled branch large enough to
+    // calculate its children
+    private boolean culledVisible = false;
+    // grids of the children of the big parents, and their validity
+    private ChildGrid[] grids;
+    private int positionStamp = 0;
+    private boolean dirty = true;
+    private ForkJoinPool pool = null;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    // threshold of the current calculation
+    private int forkThreshold = Integer.MAX_VALUE;
+
+    /**
+     * Constructor
+     *
+     * @param root root of the tree to lay out
+     */
+    public TreeMapLayout(TreeMapNode root) {
+        this.root = root;
+    }
+
+    /**
+     * calculate the positions of all the descendants of the parent, in the
+     * bounds of the parent, with the border of the TreeMapNode.
+     *
+     * @param strategy the split strategy
+     * @param parent node of the tree (generally the displayed root)
+     */
+    public void calculatePositions(SplitStrategy strategy, TreeMapNode parent) {
+        calculatePositions(strategy, parent, TreeMapNode.getBorder());
+    }
+
+    /**
+     * calculate the positions of all the descendants of the parent, in the
+     * bounds of the parent.
+     *
+     * @param strategy the split strategy
+     * @param parent node of the tree (generally the displayed root)
+     * @param context the context of the calculation
+     */
+    public void calculatePositions(SplitStrategy strategy, TreeMapNode parent,
+            LayoutContext context) {
+        calculatePositions(strategy, parent, context.getBorder());
+    }
+
+    private void calculatePositions(SplitStrategy strategy, TreeMapNode parent,
+            int border) {
+        if (strategy == null || parent == null) {
+            return;
+        }
+        int p = checkParent(parent);
+        calculateChildren(strategy, p, border);
+    }
+
+    /**
+     * calculate the normalized positions of all the descendants of the
+     * parent, then scale them to the bounds of the parent with the border of
+     * the TreeMapNode.
+     * <p>
+     * The strategy works with the proportions of the current bounds of the
+     * parent.
+     *
+     * @param strategy the split strategy
+     * @param parent node of the tree (generally the displayed root)
+     * @see #scalePositions(TreeMapNode)
+     */
+    public void calculateNormalizedPositions(SplitStrategy strategy,
+            TreeMapNode parent) {
+        calculateNormalizedPositions(strategy, parent, new LayoutContext());
+    }
+
+    /**
+     * calculate the normalized positions of all the descendants of the
+     * parent, then scale them to the bounds of the parent.
+     *
+     * @param strategy the split strategy
+     * @param parent node of the tree (generally the displayed root)
+     * @param context the context of the calculation
+     * @see #scalePositions(TreeMapNode, LayoutContext)
+     */
+    public void calculateNormalizedPositions(SplitStrategy strategy,
+            TreeMapNode parent, LayoutContext context) {
+        if (strategy == null || parent == null) {
+            return;
+        }
+        int p = checkParent(parent);
+        int px = x[p];
+        int py = y[p];
+        int pw = width[p];
+        int ph = height[p];
+        // the same proportions, with a resolution which makes the rounding
+        // of the strategies negligible
+        int side = Math.max(pw, ph);
+        if (side <= 0) {
+            pw = 1;
+            ph = 1;
+            side = 1;
+        }
+        x[p] = 0;
+        y[p] = 0;
+        width[p] = Math.max(1, (int)((long)pw * NORMALIZED_SIDE / side));
+        height[p] = Math.max(1, (int)((long)ph * NORMALIZED_SIDE / side));
+        // the culling of the real size, at the normalized resolution
+        int savedMinCellSize = minCellSize;
+        minCellSize = (int)((long)minCellSize * NORMALIZED_SIDE / side);
+        try {
+            calculateChildren(strategy, p, 0);
+        } finally {
+            minCellSize = savedMinCellSize;
+        }
+        normalize(p);
+        normalizedWidth = pw;
+        normalizedHeight = ph;
+        normalizedMinCellSize = minCellSize;
+        x[p] = px;
+        y[p] = py;
+        width[p] = pw;
+        height[p] = ph;
+        normalizedParent = p;
+
+        scalePositions(parent, context);
+    }
+
+    /**
+     * Scale the normalized positions of the descendants of the parent to the
+     * current bounds of the parent, with the border of the TreeMapNode.
+     *
+     * @param parent the node of the last normalized calculation
+     * @throws IllegalStateException if the positions of the descendants of
+     *           the parent are not normalized
+     * @see #isNormalized(TreeMapNode)
+     */
+    public void scalePositions(TreeMapNode parent) {
+        scalePositions(parent, new LayoutContext());
+    }
+
+    /**
+     * Scale the normalized positions of the descendants of the parent to the
+     * current bounds of the parent.
+     *
+     * @param parent the node of the last normalized calculation
+     * @param context the context of the calculation
+     * @throws IllegalStateException if the positions of the descendants of
+     *           the parent are not normalized
+     */
+    public void scalePositions(TreeMapNode parent, LayoutContext context) {
+        if ( !hasNormalizedPositions(parent)) {
+            throw new IllegalStateException("the positions are not normalized");
+        }
+        int p = parent.ordinal;
+        positionStamp++;
+        culledVisible = false;
+        scaleChildren(p, x[p], y[p], width[p], height[p], context.getBorder());
+        // the culling of the calculation holds until a grow on one of the
+        // axes : the rounding alone does not show the children of a culled
+        // branch
+        if (width[p] <= normalizedWidth && height[p] <= normalizedHeight
+                && minCellSize >= normalizedMinCellSize) {
+            culledVisible = false;
+        }
+    }
+
+    /**
+     * The normalized calculation collapses the branches too small for the
+     * minimal cell size, so their children have no normalized positions.
+     * After a grow (or with a smaller minimal cell size), the scaling may find
+     * such a branch large enough to show its children : the positions have
+     * then to be calculated again.
+     *
+     * @param parent a node of the tree
+     * @return true if the descendants of the parent have normalized positions
+     *         which can be scaled, and the last scaling has not found a
+     *         collapsed branch to calculate
+     */
+    public boolean isNormalized(TreeMapNode parent) {
+        return hasNormalizedPositions(parent) && !culledVisible;
+    }
+
+    private boolean hasNormalizedPositions(TreeMapNode parent) {
+        return !dirty && parent != null && parent.layout == this
+                && parent.ordinal == normalizedParent;
+    }
+
+    private int checkParent(TreeMapNode parent) {
+        if (dirty) {
+            index();
+        }
+        if (parent.layout != this) {
+            throw new IllegalArgumentException("the node is not part of this layout");
+        }
+        return parent.ordinal;
+    }
+
+    private void calculateChildren(SplitStrategy strategy, int p, int border) {
+        positionStamp++;
+        // the parent may have been collapsed by a layout from an ancestor
+        collapsed[p] = false;
+        culled[p] = false;
+        if (pool != null && subtreeSize[p] >= parallelThreshold) {
+            forkThreshold = parallelThreshold;
+            pool.invoke(new LayoutTask(strategy, p, x[p], y[p], width[p],
+                    height[p], border, -1));
+        } else {
+            forkThreshold = Integer.MAX_VALUE;
+            layoutChildren(strategy, p, x[p], y[p], width[p], height[p],
+                    border, -1);
+        }
+    }
+
+    /**
+     * Detach all the nodes from the columns. <BR>
+     * The nodes keep their last positions in their own bounds.
+     */
+    public void detach() {
+        if (nodes == null) {
+            return;
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            TreeMapNode node = nodes[i];
+            if (node.layout == this) {
+                node.getBounds();
+                node.layout = null;
+            }
+        }
+        nodes = null;
+        dirty = true;
+    }
+
+    /**
+     * @return the pool of the parallel layout, or <code>null</code> for the
+     *         sequential layout
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * @return the minimal number of nodes of a subtree calculated in its own
+     *         task
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * @return the minimal width and height of a branch whose children are
+     *         calculated
+     */
+    public int getMinCellSize() {
+        return minCellSize;
+    }
+
+    /**
+     * @return the root of the laid out tree
+     */
+    public TreeMapNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Tell the layout that the structure of the tree has changed. <BR>
+     * The tree will be indexed again before the next layout. This is done
+     * automatically by {@link TreeMapNode#add(TreeMapNode)}.
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Calculate the subtrees in parallel with the pool. <BR>
+     * A <code>null</code> pool (the default) calculates the layout on the
+     * calling thread.
+     *
+     * @param pool the pool, or <code>null</code>
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * set the minimal number of nodes of a subtree calculated in its own task.
+     *
+     * @param parallelThreshold the threshold
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+    }
+
+    /**
+     * set the minimal width and height of a branch whose children are
+     * calculated. <BR>
+     * A smaller branch is collapsed : it is drawn as a single cell. The
+     * default is 0, nothing is collapsed.
+     *
+     * @param minCellSize the minimal size in pixels
+     */
+    public void setMinCellSize(int minCellSize) {
+        this.minCellSize = minCellSize;
+    }
+
+    /**
+     * get the node of a slot.
+     *
+     * @param index slot
+     * @return the node of the slot
+     */
+    public TreeMapNode getNode(int index) {
+        return nodes[order[index]];
+    }
+
+    /**
+     * get the weight of the node of a slot, as defined by the strategy.
+     *
+     * @param index slot
+     * @return the weight of the node of the slot
+     * @see SplitStrategy#getWeight(TreeMapNode)
+     */
+    public double getWeight(int index) {
+        return weight[order[index]];
+    }
+
+    /**
+     * Sum the weights of the slots from (inclusive) to to (exclusive).
+     *
+     * @param from first slot
+     * @param to end of the range
+     * @return the sum of the weights
+     */
+    public double sumWeight(int from, int to) {
+        double d = 0.0;
+        for (int i = from; i < to; i++) {
+            d += weight[order[i]];
+        }
+        return d;
+    }
+
+    /**
+     * set the bounds of the node of a slot.
+     *
+     * @param index slot
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @param w width
+     * @param h height
+     */
+    public void setBounds(int index, int x, int y, int w, int h) {
+        int o = order[index];
+        this.x[o] = x;
+        this.y[o] = y;
+        this.width[o] = w;
+        this.height[o] = h;
+    }
+
+    /**
+     * put a node in a slot. <BR>
+     * The node must be one of the nodes of the range of the slot.
+     *
+     * @param index slot
+     * @param node node
+     */
+    public void setNode(int index, TreeMapNode node) {
+        order[index] = node.ordinal;
+    }
+
+    /**
+     * Sort the slots by descending weight. The sort is stable.
+     *
+     * @param from first slot
+     * @param to end of the range
+     */
+    public void sortByDescendingWeight(int from, int to) {
+        if (to - from > 1) {
+            for (int i = from; i < to; i++) {
+                keys[i] = weight[order[i]];
+            }
+            mergeSort(from, to);
+        }
+    }
+
+    /**
+     * Sum the weights of the slots of a range in their current order. The
+     * cumulative sum of the slot i is the sum of the weights from from to i
+     * (inclusive). It is valid until the slots of the range are reordered.
+     *
+     * @param from first slot
+     * @param to end of the range
+     */
+    void accumulateWeights(int from, int to) {
+        double d = 0.0;
+        for (int i = from; i < to; i++) {
+            d += weight[order[i]];
+            cumulative[i] = d;
+        }
+    }
+
+    /**
+     * get the cumulative sum of the weights before a slot of an accumulated
+     * range.
+     *
+     * @param index slot
+     * @return the sum of the weights from the first slot of the range to
+     *         index (exclusive)
+     */
+    double cumulativeBefore(int index) {
+        return rangeStart[index] ? 0.0 : cumulative[index - 1];
+    }
+
+    private void index() {
+        List<TreeMapNode> queue = new ArrayList<>();
+        queue.add(root);
+        for (int i = 0; i < queue.size(); i++) {
+            queue.addAll(queue.get(i).getChildren());
+        }
+        int size = queue.size();
+
+        int[] nx = new int[size];
+        int[] ny = new int[size];
+        int[] nw = new int[size];
+        int[] nh = new int[size];
+        int[] first = new int[size];
+        int[] count = new int[size];
+        int next = 1;
+        for (int i = 0; i < size; i++) {
+            TreeMapNode node = queue.get(i);
+            // keep the current positions
+            nx[i] = node.getX();
+            ny[i] = node.getY();
+            nw[i] = node.getWidth();
+            nh[i] = node.getHeight();
+            first[i] = next;
+            count[i] = node.getChildren().size();
+            next += count[i];
+        }
+
+        nodes = queue.toArray(new TreeMapNode[size]);
+        for (int i = 0; i < size; i++) {
+            nodes[i].layout = this;
+            nodes[i].ordinal = i;
+        }
+        x = nx;
+        y = ny;
+        width = nw;
+        height = nh;
+        int[] subtree = new int[size];
+        // the children are after their parent
+        for (int i = size - 1; i >= 0; i--) {
+            subtree[i] = 1;
+            for (int c = first[i]; c < first[i] + count[i]; c++) {
+                subtree[i] += subtree[c];
+            }
+        }
+        firstChild = first;
+        childCount = count;
+        subtreeSize = subtree;
+        collapsed = new boolean[size];
+        culled = new boolean[size];
+        left = new double[size];
+        top = new double[size];
+        right = new double[size];
+        bottom = new double[size];
+        normalizedParent = -1;
+        weight = new double[size];
+        cumulative = new double[size];
+        rangeStart = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            if (count[i] != 0) {
+                rangeStart[first[i]] = true;
+            }
+        }
+        order = new int[size];
+        scratch = new int[size];
+        keys = new double[size];
+        scratchKeys = new double[size];
+        grids = new ChildGrid[size];
+        dirty = false;
+    }
+
+    private void layoutChildren(SplitStrategy strategy, int parent, int px,
+            int py, int pw, int ph, int border, double parentWeight) {
+        int from = firstChild[parent];
+        int to = from + childCount[parent];
+        if (from == to) {
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            order[i] = i;
+            weight[i] = strategy.getWeight(nodes[i]);
+        }
+        double weight0 = parentWeight;
+        if (weight0 < 0) {
+            weight0 = sumWeight(from, to);
+        }
+
+        strategy.layoutChildren(this, from, to, weight0, px, py, pw, ph);
+
+        LayoutTask forked = null;
+        for (int i = from; i < to; i++) {
+            collapsed[i] = childCount[i] != 0 && minCellSize > 0
+                    && (width[i] < minCellSize || height[i] < minCellSize);
+            if (childCount[i] == 0 || collapsed[i]) {
+                // if this is a leaf, we display with the border
+                x[i] += border;
+                y[i] += border;
+                width[i] = Math.max(0, width[i] - border);
+                height[i] = Math.max(0, height[i] - border);
+            } else {
+                // if this is not a leaf, calculation for the children
+                int bSub = LayoutContext.getBranchInset(border);
+                int cx = x[i] + bSub;
+                int cy = y[i] + bSub;
+                int cw = Math.max(0, width[i] - bSub);
+                int ch = Math.max(0, height[i] - bSub);
+                if (subtreeSize[i] >= forkThreshold) {
+                    LayoutTask task = new LayoutTask(strategy, i, cx, cy, cw, ch,
+                            border - bSub, weight[i]);
+                    task.next = forked;
+                    forked = task;
+                    task.fork();
+                } else {
+                    layoutChildren(strategy, i, cx, cy, cw, ch, border - bSub,
+                            weight[i]);
+                }
+            }
+        }
+        while (forked != null) {
+            forked.join();
+            forked = forked.next;
+        }
+    }
+
+    private void normalize(int parent) {
+        double pw = width[parent];
+        double ph = height[parent];
+        int from = firstChild[parent];
+        int to = from + childCount[parent];
+        for (int i = from; i < to; i++) {
+            if (pw > 0) {
+                left[i] = (x[i] - x[parent]) / pw;
+                right[i] = (x[i] + width[i] - x[parent]) / pw;
+            } else {
+                left[i] = 0;
+                right[i] = 0;
+            }
+            if (ph > 0) {
+                top[i] = (y[i] - y[parent]) / ph;
+                bottom[i] = (y[i] + height[i] - y[parent]) / ph;
+            } else {
+                top[i] = 0;
+                bottom[i] = 0;
+            }
+            culled[i] = collapsed[i];
+            if (childCount[i] != 0 && !collapsed[i]) {
+                normalize(i);
+            }
+        }
+    }
+
+    private void scaleChildren(int parent, int px, int py, int pw, int ph,
+            int border) {
+        int from = firstChild[parent];
+        int to = from + childCount[parent];
+        for (int i = from; i < to; i++) {
+            // the edges are rounded, so the neighbours stay contiguous
+            int x0 = (int)(left[i] * pw + 0.5);
+            int y0 = (int)(top[i] * ph + 0.5);
+            x[i] = px + x0;
+            y[i] = py + y0;
+            width[i] = (int)(right[i] * pw + 0.5) - x0;
+            height[i] = (int)(bottom[i] * ph + 0.5) - y0;
+            collapsed[i] = childCount[i] != 0 && minCellSize > 0
+                    && (width[i] < minCellSize || height[i] < minCellSize);
+            if (culled[i] && !collapsed[i]) {
+                // no normalized positions for the children
+                culledVisible = true;
+                collapsed[i] = true;
+            }
+            if (childCount[i] == 0 || collapsed[i]) {
+                // if this is a leaf, we display with the border
+                x[i] += border;
+                y[i] += border;
+                width[i] = Math.max(0, width[i] - border);
+                height[i] = Math.max(0, height[i] - border);
+            } else {
+                // if this is not a leaf, calculation for the children
+                int bSub = LayoutContext.getBranchInset(border);
+                scaleChildren(i, x[i] + bSub, y[i] + bSub,
+                        Math.max(0, width[i] - bSub),
+                        Math.max(0, height[i] - bSub), border - bSub);
+            }
+        }
+    }
+
+    /**
+     * @param ordinal ordinal of a node of the last indexed tree
+     * @return the node
+     */
+    TreeMapNode getNodeByOrdinal(int ordinal) {
+        return nodes[ordinal];
+    }
+
+    /**
+     * Invalidate the grids of the children after a position has been set
+     * outside of a calculation.
+     */
+    void positionsChanged() {
+        positionStamp++;
+    }
+
+    /**
+     * get the first child of a node which contains a point, borders included.
+     *
+     * @param parent ordinal of the node
+     * @param px x-coordinate of the point
+     * @param py y-coordinate of the point
+     * @return the first child (in the order of the children) which contains
+     *         the point, or <code>null</code>
+     */
+    TreeMapNode getChild(int parent, int px, int py) {
+        int from = firstChild[parent];
+        int to = from + childCount[parent];
+        if (to - from < GRID_MIN_CHILDREN) {
+            for (int i = from; i < to; i++) {
+                if (contains(i, px, py)) {
+                    return nodes[i];
+                }
+            }
+            return null;
+        }
+        ChildGrid grid = grids[parent];
+        if (grid == null || grid.stamp != positionStamp) {
+            grid = new ChildGrid(from, to);
+            grids[parent] = grid;
+        }
+        return grid.getChild(px, py);
+    }
+
+    private boolean contains(int i, int px, int py) {
+        return px >= x[i] && px <= x[i] + width[i] && py >= y[i]
+                && py <= y[i] + height[i];
+    }
+
+    /**
+     * @param ordinal ordinal of a node
+     * @return true if the node has not been calculated further at the last
+     *         layout
+     */
+    boolean isCollapsed(int ordinal) {
+        return collapsed[ordinal];
+    }
+
+    private void mergeSort(int from, int to) {
+        if (to - from <= 8) {
+            // insertion sort for the small ranges
+            for (int i = from + 1; i < to; i++) {
+                int o = order[i];
+                double k = keys[i];
+                int j = i;
+                while (j > from && keys[j - 1] < k) {
+                    order[j] = order[j - 1];
+                    keys[j] = keys[j - 1];
+                    j--;
+                }
+                order[j] = o;
+                keys[j] = k;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(from, mid);
+        mergeSort(mid, to);
+        if (keys[mid - 1] >= keys[mid]) {
+            // already in order
+            return;
+        }
+        System.arraycopy(order, from, scratch, from, to - from);
+        System.arraycopy(keys, from, scratchKeys, from, to - from);
+        int i = from;
+        int j = mid;
+        int k = from;
+        while (i < mid && j < to) {
+            if (scratchKeys[j] > scratchKeys[i]) {
+                keys[k] = scratchKeys[j];
+                order[k++] = scratch[j++];
+            } else {
+                keys[k] = scratchKeys[i];
+                order[k++] = scratch[i++];
+            }
+        }
+        while (i < mid) {
+            keys[k] = scratchKeys[i];
+            order[k++] = scratch[i++];
+        }
+        while (j < to) {
+            keys[k] = scratchKeys[j];
+            order[k++] = scratch[j++];
+        }
+    }
+
+    /**
+     * Uniform grid over the children of a parent. <BR>
+     * Each cell lists the children whose bounds intersect it, in the order of
+     * the children, so the first child of a cell which contains a point is
+     * the first child of the parent which contains it.
+     */
+    private final class ChildGrid {
+        private final int stamp = positionStamp;
+        private final int gridX;
+        private final int gridY;
+        private final int cellWidth;
+        private final int cellHeight;
+        private final int columns;
+        private final int rows;
+        // the children of the cell c are items[start[c]] to items[start[c + 1]]
+        private final int[] start;
+        private final int[] items;
+
+        ChildGrid(int from, int to) {
+            int minX = Integer.MAX_VALUE;
+            int minY = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            int maxY = Integer.MIN_VALUE;
+            for (int i = from; i < to; i++) {
+                if (width[i] >= 0 && height[i] >= 0) {
+                    minX = Math.min(minX, x[i]);
+                    minY = Math.min(minY, y[i]);
+                    maxX = Math.max(maxX, x[i] + width[i]);
+                    maxY = Math.max(maxY, y[i] + height[i]);
+                }
+            }
+            if (minX > maxX) {
+                // no child can contain a point
+                minX = 0;
+                minY = 0;
+                maxX = 0;
+                maxY = 0;
+            }
+            gridX = minX;
+            gridY = minY;
+            // about one cell per child, with the proportions of the bounds
+            long w = (long)maxX - minX + 1;
+            long h = (long)maxY - minY + 1;
+            int n = to - from;
+            int c = (int)Math.max(1, Math.min(w,
+                    Math.round(Math.sqrt((double)n * w / h))));
+            int r = (int)Math.max(1, Math.min(h, (n + c - 1) / c));
+            cellWidth = (int)((w + c - 1) / c);
+            cellHeight = (int)((h + r - 1) / r);
+            columns = (int)((w + cellWidth - 1) / cellWidth);
+            rows = (int)((h + cellHeight - 1) / cellHeight);
+
+            // count the children of each cell, then fill the cells
+            int cells = columns * rows;
+            start = new int[cells + 1];
+            for (int i = from; i < to; i++) {
+                if (width[i] >= 0 && height[i] >= 0) {
+                    for (int cy = row(y[i]); cy <= row(y[i] + height[i]); cy++) {
+                        for (int cx = column(x[i]); cx <= column(x[i] + width[i]); cx++) {
+                            start[cy * columns + cx + 1]++;
+                        }
+                    }
+                }
+            }
+            for (int k = 0; k < cells; k++) {
+                start[k + 1] += start[k];
+            }
+            items = new int[start[cells]];
+            int[] fill = new int[cells];
+            for (int i = from; i < to; i++) {
+                if (width[i] >= 0 && height[i] >= 0) {
+                    for (int cy = row(y[i]); cy <= row(y[i] + height[i]); cy++) {
+                        for (int cx = column(x[i]); cx <= column(x[i] + width[i]); cx++) {
+                            int cell = cy * columns + cx;
+                            items[start[cell] + fill[cell]++] = i;
+                        }
+                    }
+                }
+            }
+        }
+
+        TreeMapNode getChild(int px, int py) {
+            if (px < gridX || py < gridY) {
+                return null;
+            }
+            int cx = column(px);
+            int cy = row(py);
+            if (cx >= columns || cy >= rows) {
+                return null;
+            }
+            int cell = cy * columns + cx;
+            for (int k = start[cell]; k < start[cell + 1]; k++) {
+                int i = items[k];
+                if (contains(i, px, py)) {
+                    return nodes[i];
+                }
+            }
+            return null;
+        }
+
+        private int column(int px) {
+            return (px - gridX) / cellWidth;
+        }
+
+        private int row(int py) {
+            return (py - gridY) / cellHeight;
+        }
+    }
+
+    /**
+     * Task which calculates the subtree of a node.
+     */
+    private final class LayoutTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final SplitStrategy strategy;
+        private final int parent;
+        private final int px;
+        private final int py;
+        private final int pw;
+        private final int ph;
+        private final int border;
+        private final double parentWeight;
+        // next forked task of the same parent
+        LayoutTask next;
+
+        LayoutTask(SplitStrategy strategy, int parent, int px, int py, int pw,
+                int ph, int border, double parentWeight) {
+            this.strategy = strategy;
+            this.parent = parent;
+            this.px = px;
+            this.py = py;
+            this.pw = pw;
+            this.ph = ph;
+            this.border = border;
+            this.parentWeight = parentWeight;
+        }
+
+        @Override
+        protected void compute() {
+            layoutChildren(strategy, parent, px, py, pw, ph, border, parentWeight);
+        }
+    }
+}
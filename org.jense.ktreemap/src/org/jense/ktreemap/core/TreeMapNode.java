@@ -0,0 +1,561 @@
+package org.jense.ktreemap.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Node of a KTreeMap.<BR>
+ * If the node is a branch, only the label is set.<BR>
+ * If the node is a leaf, we need a label, a weight and a value.
+ * <p>
+ * You can also use a TreeMapNode in a JTree.
+ * <p>
+ * Once the tree is indexed by a TreeMapLayout, the position and the size of
+ * the node are read from the columns of the layout.
+ *
+ * @see TreeMapLayout
+ *
+ * @author Laurent Dutheil
+ */
+
+public class TreeMapNode {
+
+    @SuppressWarnings("unused")
+    private static final long serialVersionUID = 742372833853976103L;
+    // max border between two nodes of the same level
+    private static int border = 3;
+    private double weight = 0.0;
+    // incremented at each change of a weight in the subtree
+    private long version = 0;
+    // incremented at each change of a value in the subtree
+    private long contentVersion = 0;
+    // number of leaves of the subtree, 1 for a leaf
+    private int leafCount = 1;
+    // statistics of the values of the leaves, null when a change invalidated them
+    private TreeMapValueStatistics statistics;
+    private ITreeMapValueProvider statisticsProvider;
+    private TreeMapRectangle bounds = new TreeMapRectangle(0, 0, 0, 0);
+    private Object value;
+    private final ArrayList<TreeMapNode> children = new ArrayList<>();
+    private TreeMapNode parent;
+    // columns of the positions, once the tree has been indexed
+    TreeMapLayout layout;
+    int ordinal = -1;
+
+    /**
+     * Constructor for a branch
+     *
+     * @param value value of the TreeMapNode
+     */
+    public TreeMapNode(Object value) {
+        this.value = value;
+    }
+
+    /**
+     * Constructor for a leaf.
+     *
+     * @param weight weight of the leaf (if negative, we take the absolute value).
+     * @param value Value associ�e � la feuille
+     */
+    public TreeMapNode(Object value, double weight) {
+        this.value = value;
+        // the weight must be positive
+        this.weight = Math.abs(weight);
+    }
+
+    /**
+     * Get the max border between two nodes of the same level.
+     *
+     * @return Returns the border.
+     */
+    public static int getBorder() {
+        return TreeMapNode.border;
+    }
+
+    /**
+     * Set the max border between two nodes of the same level.
+     *
+     * @param border The border to set.
+     */
+    public static void setBorder(int border) {
+        TreeMapNode.border = border;
+    }
+
+    /**
+     * add a new child to the node.
+     *
+     * @param newChild new child
+     */
+    public void add(TreeMapNode newChild) {
+        // a leaf which becomes a branch is no more counted
+        int addedLeaves = children.isEmpty() ? newChild.leafCount - 1
+                : newChild.leafCount;
+        children.add(newChild);
+        newChild.setParent(this);
+        addLeafCount(addedLeaves);
+        if (layout != null) {
+            layout.invalidate();
+        }
+        setWeight(weight + newChild.getWeight());
+    }
+
+    /**
+     * get the active leaf.<BR>
+     * null if the passed position is not in this tree. A collapsed branch is
+     * returned as a leaf.
+     *
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @return active leaf
+     */
+    public TreeMapNode getActiveLeaf(int x, int y) {
+
+        if (isLeaf() || isCollapsed()) {
+            if (x >= getX() && x <= getX() + getWidth()
+                    && y >= getY() && y <= getY() + getHeight()) {
+                return this;
+            }
+        } else {
+            TreeMapNode node = findChild(x, y);
+            if (node != null) {
+                return node.getActiveLeaf(x, y);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * get the active leaves of several points, in one pass. <BR>
+     * The result is the same as getActiveLeaf for each point. A point
+     * strictly inside the leaf of the previous point gets this leaf without
+     * searching the tree, so the points of a mouse trace are resolved
+     * mostly in constant time.
+     *
+     * @param x x-coordinates of the points
+     * @param y y-coordinates of the points
+     * @param leaves array which receives the active leaf of each point, or
+     *          <code>null</code>
+     */
+    public void getActiveLeaves(int[] x, int[] y, TreeMapNode[] leaves) {
+        TreeMapNode last = null;
+        for (int i = 0; i < x.length; i++) {
+            int px = x[i];
+            int py = y[i];
+            if (last == null || px <= last.getX() || py <= last.getY()
+                    || px >= last.getX() + last.getWidth()
+                    || py >= last.getY() + last.getHeight()) {
+                last = getActiveLeaf(px, py);
+            }
+            leaves[i] = last;
+        }
+    }
+
+    /**
+     * Visit the leaves of the tree whose bounds intersect a region, borders
+     * included. A collapsed branch is visited as a leaf. <BR>
+     * The subtrees whose bounds do not intersect the region are not
+     * visited.
+     *
+     * @param region the region
+     * @param visitor the visitor of the leaves
+     */
+    public void visitLeavesIntersecting(TreeMapRectangle region,
+            ITreeMapNodeVisitor visitor) {
+        if ( !region.intersects(getX(), getY(), getWidth(), getHeight())) {
+            return;
+        }
+        if (isLeaf() || isCollapsed()) {
+            visitor.visit(this);
+        } else {
+            for (TreeMapNode node : children) {
+                node.visitLeavesIntersecting(region, visitor);
+            }
+        }
+    }
+
+    /**
+     * @return the bounds of the KTreeMap
+     */
+    public TreeMapRectangle getBounds() {
+        if (layout != null) {
+            bounds.x = layout.x[ordinal];
+            bounds.y = layout.y[ordinal];
+            bounds.width = layout.width[ordinal];
+            bounds.height = layout.height[ordinal];
+        }
+        return bounds;
+    }
+
+    /**
+     * get the first child which fits the position.<BR>
+     * null if the passed position is not in this tree.
+     *
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @return the first child which fits the position.
+     */
+    public TreeMapNode getChild(int x, int y) {
+        if ( !isLeaf() && !isCollapsed()) {
+            return findChild(x, y);
+        }
+        return null;
+    }
+
+    private TreeMapNode findChild(int x, int y) {
+        if (layout != null) {
+            // the big parents are indexed by a grid
+            return layout.getChild(ordinal, x, y);
+        }
+        for (TreeMapNode node : children) {
+            if (x >= node.getX() && x <= node.getX() + node.getWidth()
+                    && y >= node.getY() && y <= node.getY() + node.getHeight()) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * get a List with the children.
+     *
+     * @return List with the children
+     */
+    public List<TreeMapNode> getChildren() {
+        return children;
+    }
+
+    /**
+     * get the height.
+     *
+     * @return the height
+     */
+    public int getHeight() {
+        if (layout != null) {
+            return layout.height[ordinal];
+        }
+        return bounds.height;
+    }
+
+    /**
+     * get the Value.
+     *
+     * @return the value
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * get the weight.
+     *
+     * @return the weight
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * get the number of leaves of the subtree. <BR>
+     * It is maintained by add, so it costs nothing to read.
+     *
+     * @return the number of leaves, 1 for a leaf
+     */
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * get the statistics of the double values of the leaves of the subtree.
+     * <BR>
+     * The statistics are kept by the nodes : setValue, setWeight and add
+     * only invalidate the node and its parents, whose statistics are then
+     * combined again from the ones of their children. So the statistics of
+     * the root of an unchanged tree cost nothing, and every user of a tree
+     * shares them. A value changed in place must be set again with setValue.
+     *
+     * @param provider provider of the double values of the leaves
+     * @return the statistics of the subtree
+     */
+    public TreeMapValueStatistics getValueStatistics(
+            ITreeMapValueProvider provider) {
+        if (statistics == null || statisticsProvider != provider) {
+            if (isLeaf()) {
+                statistics = new TreeMapValueStatistics(provider
+                        .getDoubleValue(value), weight);
+            } else {
+                TreeMapValueStatistics result = null;
+                for (TreeMapNode child : children) {
+                    TreeMapValueStatistics s = child.getValueStatistics(provider);
+                    result = result == null ? s : result.combine(s);
+                }
+                statistics = result;
+            }
+            statisticsProvider = provider;
+        }
+        return statistics;
+    }
+
+    /**
+     * forget the statistics of the values of the subtree and of its parents.
+     * <BR>
+     * To call when the double values of the leaves change without setValue,
+     * for example when the provider reads another field of the values.
+     */
+    public void invalidateValueStatistics() {
+        contentChanged();
+        for (TreeMapNode node = parent; node != null; node = node.parent) {
+            node.statistics = null;
+        }
+        ArrayDeque<TreeMapNode> stack = new ArrayDeque<>();
+        stack.push(this);
+        while ( !stack.isEmpty()) {
+            TreeMapNode node = stack.pop();
+            node.statistics = null;
+            for (TreeMapNode child : node.children) {
+                stack.push(child);
+            }
+        }
+    }
+
+    /**
+     * get the version of the subtree. <BR>
+     * The version changes each time a weight of the subtree changes, including
+     * when a child is added.
+     *
+     * @return the version of the subtree
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * get the content version of the subtree. <BR>
+     * The content version changes each time a value of the subtree changes,
+     * with setValue or invalidateValueStatistics. Unlike the version, it does
+     * not change the positions.
+     *
+     * @return the content version of the subtree
+     * @see #getVersion()
+     */
+    public long getContentVersion() {
+        return contentVersion;
+    }
+
+    /**
+     * get the width.
+     *
+     * @return the width
+     */
+    public int getWidth() {
+        if (layout != null) {
+            return layout.width[ordinal];
+        }
+        return bounds.width;
+    }
+
+    /**
+     * get the x-coordinate.
+     *
+     * @return the x-coordinate
+     */
+    public int getX() {
+        if (layout != null) {
+            return layout.x[ordinal];
+        }
+        return bounds.x;
+    }
+
+    /**
+     * get the y-coordinate.
+     *
+     * @return the y-coordinate
+     */
+    public int getY() {
+        if (layout != null) {
+            return layout.y[ordinal];
+        }
+        return bounds.y;
+    }
+
+    /**
+     * A branch is collapsed when the layout found it too small to calculate
+     * its children. It is drawn as a single cell, and the positions of its
+     * children are not valid.
+     *
+     * @return true if the TreeMapNode is a collapsed branch
+     * @see TreeMapLayout#setMinCellSize(int)
+     */
+    public boolean isCollapsed() {
+        return layout != null && layout.isCollapsed(ordinal);
+    }
+
+    /**
+     * @return true if the TreeMapNode is a leaf
+     */
+    public boolean isLeaf() {
+        return children.isEmpty();
+    }
+
+    /**
+     * set the position and the size.
+     *
+     * @param bounds bounds
+     */
+    public void setBounds(TreeMapRectangle bounds) {
+        if (layout != null) {
+            setPosition(bounds.x, bounds.y);
+            setSize(bounds.width, bounds.height);
+        } else {
+            this.bounds = bounds;
+        }
+    }
+
+    /**
+     * set the height.
+     *
+     * @param height la nouvelle valeur de height
+     */
+    public void setHeight(int height) {
+        if (layout != null) {
+            if (layout.height[ordinal] != height) {
+                layout.height[ordinal] = height;
+                layout.positionsChanged();
+            }
+        } else {
+            bounds.height = height;
+        }
+    }
+
+    /**
+     * set the position.
+     *
+     * @param x x-coordinate
+     * @param y y-coordinate
+     */
+    public void setPosition(int x, int y) {
+        setX(x);
+        setY(y);
+    }
+
+    /**
+     * set size.
+     *
+     * @param width the new width
+     * @param height the new height
+     */
+    public void setSize(int width, int height) {
+        setWidth(width);
+        setHeight(height);
+    }
+
+    /**
+     * set the Value. <BR>
+     * The statistics of the values of the parents are calculated again, and
+     * the content version of the node and its parents changes.
+     *
+     * @param value the new value
+     */
+    public void setValue(Object value) {
+        this.value = value;
+        invalidateStatistics();
+        contentChanged();
+    }
+
+    /**
+     * set the weight of the node and update the parents.
+     *
+     * @param weight the new weight
+     */
+    public void setWeight(double weight) {
+        double newWeight = Math.abs(weight);
+        version++;
+        statistics = null;
+        if (parent != null) {
+            parent.setWeight(parent.weight - this.weight + newWeight);
+        }
+        this.weight = newWeight;
+    }
+
+    private void contentChanged() {
+        for (TreeMapNode node = this; node != null; node = node.parent) {
+            node.contentVersion++;
+        }
+    }
+
+    private void invalidateStatistics() {
+        // the parents of a node without statistics have none either
+        for (TreeMapNode node = this; node != null
+                && node.statistics != null; node = node.parent) {
+            node.statistics = null;
+        }
+    }
+
+    private void addLeafCount(int delta) {
+        for (TreeMapNode node = this; node != null; node = node.parent) {
+            node.leafCount += delta;
+        }
+    }
+
+    /**
+     * set the width.
+     *
+     * @param width la nouvelle valeur de width
+     */
+    public void setWidth(int width) {
+        if (layout != null) {
+            if (layout.width[ordinal] != width) {
+                layout.width[ordinal] = width;
+                layout.positionsChanged();
+            }
+        } else {
+            bounds.width = width;
+        }
+    }
+
+    /**
+     * set the x-coordinate.
+     *
+     * @param x the new x-coordinate
+     */
+    public void setX(int x) {
+        if (layout != null) {
+            if (layout.x[ordinal] != x) {
+                layout.x[ordinal] = x;
+                layout.positionsChanged();
+            }
+        } else {
+            bounds.x = x;
+        }
+    }
+
+    /**
+     * set the y-coordinate.
+     *
+     * @param y the new y-coordinate
+     */
+    public void setY(int y) {
+        if (layout != null) {
+            if (layout.y[ordinal] != y) {
+                layout.y[ordinal] = y;
+                layout.positionsChanged();
+            }
+        } else {
+            bounds.y = y;
+        }
+    }
+
+    /**
+     * @return the parent
+     */
+    public TreeMapNode getParent() {
+        return parent;
+    }
+
+    /**
+     * @param parent the parent to set
+     */
+    protected void setParent(TreeMapNode parent) {
+        this.parent = parent;
+    }
+}
@@ -1,4 +1,4 @@
-package org.jense.ktreemap;
+package org.jense.ktreemap.core;
 
 /**
  * Tree builder for a KTreeMap.
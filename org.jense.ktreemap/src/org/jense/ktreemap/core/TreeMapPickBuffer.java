@@ -0,0 +1,94 @@
+package org.jense.ktreemap.core;
+
+import java.util.Arrays;
+
+/**
+ * Buffer of the size of the drawing which stores, for each pixel, the node
+ * drawn on it.
+ * <p>
+ * The buffer is filled with the cells drawn on the screen (the leaves and
+ * the collapsed branches), in the order they are drawn. Finding the node
+ * under the cursor is then a single read of an array, whatever the depth or
+ * the width of the tree.
+ * <p>
+ * Like TreeMapNode.getActiveLeaf, a cell covers its right and bottom
+ * borders, and the first cell filled on a pixel keeps it.
+ *
+ * @see TreeMapNode#getActiveLeaf(int, int)
+ */
+public class TreeMapPickBuffer {
+    private final TreeMapLayout layout;
+    private int width;
+    private int height;
+    // ordinal + 1 of the node of each pixel, 0 for none
+    private int[] ids = new int[0];
+
+    /**
+     * Constructor
+     *
+     * @param layout layout of the nodes filled in the buffer
+     */
+    public TreeMapPickBuffer(TreeMapLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Clear the buffer and set its size. The array is only reallocated when
+     * it grows.
+     *
+     * @param width width of the drawing
+     * @param height height of the drawing
+     */
+    public void reset(int width, int height) {
+        this.width = Math.max(0, width);
+        this.height = Math.max(0, height);
+        int size = this.width * this.height;
+        if (ids.length < size) {
+            ids = new int[size];
+        } else {
+            Arrays.fill(ids, 0, size, 0);
+        }
+    }
+
+    /**
+     * Fill the pixels of the bounds of a node which are not filled yet.
+     *
+     * @param node node of the layout
+     */
+    public void fill(TreeMapNode node) {
+        if (node.layout != layout) {
+            return;
+        }
+        int x0 = Math.max(0, node.getX());
+        int y0 = Math.max(0, node.getY());
+        int x1 = Math.min(width - 1, node.getX() + node.getWidth());
+        int y1 = Math.min(height - 1, node.getY() + node.getHeight());
+        if (node.getWidth() < 0 || node.getHeight() < 0) {
+            return;
+        }
+        int id = node.ordinal + 1;
+        for (int py = y0; py <= y1; py++) {
+            int line = py * width;
+            for (int px = x0; px <= x1; px++) {
+                if (ids[line + px] == 0) {
+                    ids[line + px] = id;
+                }
+            }
+        }
+    }
+
+    /**
+     * get the node drawn on a pixel.
+     *
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @return the node, or <code>null</code> if no node is drawn on the pixel
+     */
+    public TreeMapNode getNode(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return null;
+        }
+        int id = ids[y * width + x];
+        return id == 0 ? null : layout.getNodeByOrdinal(id - 1);
+    }
+}
@@ -0,0 +1,203 @@
+package org.jense.ktreemap.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renderer which fills the cells of a treemap in an array of pixels.
+ * <p>
+ * The cells are filled in the order they are added, like successive calls
+ * of fillRectangle : a cell covers the pixels from x (inclusive) to x +
+ * width (exclusive), and from y to y + height. The colors are packed RGB
+ * integers (0xRRGGBB).
+ * <p>
+ * With a ForkJoinPool, the rows are split in bands filled in parallel. Each
+ * band only fills the cells which cross it, so the result is the same as the
+ * sequential rendering.
+ */
+public class TreeMapRasterizer {
+    // height of the bands filled in parallel
+    private static final int BAND_HEIGHT = 32;
+
+    private int width;
+    private int height;
+    private int[] pixels = new int[0];
+    // x, y, width, height and color of the cells
+    private int[] cells = new int[0];
+    private int size = 0;
+    private ForkJoinPool pool = null;
+
+    /**
+     * Clear the pixels and the cells, and set the size of the drawing. The
+     * arrays are only reallocated when they grow.
+     *
+     * @param width width of the drawing
+     * @param height height of the drawing
+     * @param background color of the pixels outside of the cells
+     */
+    public void reset(int width, int height, int background) {
+        this.width = Math.max(0, width);
+        this.height = Math.max(0, height);
+        int length = this.width * this.height;
+        if (pixels.length < length) {
+            pixels = new int[length];
+        }
+        Arrays.fill(pixels, 0, length, background);
+        size = 0;
+    }
+
+    /**
+     * Add a cell to fill.
+     *
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @param w width
+     * @param h height
+     * @param rgb packed color of the cell
+     */
+    public void addCell(int x, int y, int w, int h, int rgb) {
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        if (size + 5 > cells.length) {
+            cells = Arrays.copyOf(cells, Math.max(80, cells.length * 2));
+        }
+        cells[size++] = x;
+        cells[size++] = y;
+        cells[size++] = w;
+        cells[size++] = h;
+        cells[size++] = rgb;
+    }
+
+    /**
+     * Fill the cells in the pixels.
+     */
+    public void rasterize() {
+        if (pool == null || height <= BAND_HEIGHT) {
+            fill(0, height, 0, size);
+            return;
+        }
+        int bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        // the cells of each band, in the order of the cells
+        int[] start = new int[bands + 1];
+        for (int c = 0; c < size; c += 5) {
+            for (int b = firstBand(c); b <= lastBand(c); b++) {
+                start[b + 1]++;
+            }
+        }
+        for (int b = 0; b < bands; b++) {
+            start[b + 1] += start[b];
+        }
+        int[] items = new int[start[bands]];
+        int[] fill = new int[bands];
+        for (int c = 0; c < size; c += 5) {
+            for (int b = firstBand(c); b <= lastBand(c); b++) {
+                items[start[b] + fill[b]++] = c;
+            }
+        }
+        pool.invoke(new BandTask(0, bands, start, items));
+    }
+
+    /**
+     * @return the pixels, row by row. The array may be longer than width *
+     *         height.
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * @return the width of the drawing
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the drawing
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the pool of the bands, or <code>null</code> for the sequential
+     *         rendering
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Fill the bands of rows in parallel with the pool. <BR>
+     * A <code>null</code> pool (the default) fills the pixels on the calling
+     * thread.
+     *
+     * @param pool the pool, or <code>null</code>
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    private int firstBand(int c) {
+        return Math.max(0, cells[c + 1]) / BAND_HEIGHT;
+    }
+
+    private int lastBand(int c) {
+        int bottom = Math.min(height, cells[c + 1] + cells[c + 3]) - 1;
+        return bottom < 0 ? -1 : bottom / BAND_HEIGHT;
+    }
+
+    private void fill(int top, int bottom, int from, int to) {
+        for (int c = from; c < to; c += 5) {
+            fillCell(c, top, bottom);
+        }
+    }
+
+    private void fillCell(int c, int top, int bottom) {
+        int x0 = Math.max(0, cells[c]);
+        int x1 = Math.min(width, cells[c] + cells[c + 2]);
+        int y0 = Math.max(top, cells[c + 1]);
+        int y1 = Math.min(bottom, cells[c + 1] + cells[c + 3]);
+        int rgb = cells[c + 4];
+        if (x0 < x1) {
+            for (int py = y0; py < y1; py++) {
+                Arrays.fill(pixels, py * width + x0, py * width + x1, rgb);
+            }
+        }
+    }
+
+    /**
+     * Task which fills a range of bands.
+     */
+    private final class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final int[] start;
+        private final int[] items;
+
+        BandTask(int from, int to, int[] start, int[] items) {
+            this.from = from;
+            this.to = to;
+            this.start = start;
+            this.items = items;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BandTask(from, mid, start, items), new BandTask(
+                        mid, to, start, items));
+                return;
+            }
+            int top = from * BAND_HEIGHT;
+            int bottom = Math.min(height, top + BAND_HEIGHT);
+            for (int k = start[from]; k < start[from + 1]; k++) {
+                fillCell(items[k], top, bottom);
+            }
+        }
+    }
+}
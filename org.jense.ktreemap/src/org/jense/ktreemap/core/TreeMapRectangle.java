@@ -0,0 +1,73 @@
+package org.jense.ktreemap.core;
+
+/**
+ * Bounds of a node of a treemap, in pixels.
+ * <p>
+ * The layout does not depend on any graphic toolkit : the widgets convert
+ * these bounds to the rectangles of their toolkit.
+ */
+public class TreeMapRectangle {
+    /**
+     * x-coordinate of the rectangle.
+     */
+    public int x;
+
+    /**
+     * y-coordinate of the rectangle.
+     */
+    public int y;
+
+    /**
+     * width of the rectangle.
+     */
+    public int width;
+
+    /**
+     * height of the rectangle.
+     */
+    public int height;
+
+    /**
+     * Constructor
+     *
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @param width width
+     * @param height height
+     */
+    public TreeMapRectangle(int x, int y, int width, int height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @param px x-coordinate of the point
+     * @param py y-coordinate of the point
+     * @return true if the point is in the rectangle, borders included
+     */
+    public boolean contains(int px, int py) {
+        return px >= x && px <= x + width && py >= y && py <= y + height;
+    }
+
+    /**
+     * @param rx x-coordinate of the other rectangle
+     * @param ry y-coordinate of the other rectangle
+     * @param rwidth width of the other rectangle
+     * @param rheight height of the other rectangle
+     * @return true if the rectangles have at least one point in common,
+     *         borders included
+     */
+    public boolean intersects(int rx, int ry, int rwidth, int rheight) {
+        return width >= 0 && height >= 0 && rwidth >= 0 && rheight >= 0
+                && rx <= x + width && x <= rx + rwidth && ry <= y + height
+                && y <= ry + rheight;
+    }
+
+    @Override
+    public String toString() {
+        return "Rectangle {" + x + ", " + y + ", " + width + ", "
+                + height + "}";
+    }
+}
@@ -0,0 +1,109 @@
+package org.jense.ktreemap.core;
+
+/**
+ * Statistics of the double values of the leaves of a subtree. <BR>
+ * The statistics of a branch are combined from the ones of its children, so
+ * they are kept by the nodes and only calculated again along the path of a
+ * change.
+ *
+ * @see TreeMapNode#getValueStatistics(ITreeMapValueProvider)
+ */
+public final class TreeMapValueStatistics {
+    private final double min;
+    private final double max;
+    private final int count;
+    private final double sum;
+    private final double weightedSum;
+    private final double weight;
+
+    /**
+     * Constructor for a leaf.
+     *
+     * @param value the double value of the leaf
+     * @param weight the weight of the leaf
+     */
+    public TreeMapValueStatistics(double value, double weight) {
+        this(value, value, 1, value, value * weight, weight);
+    }
+
+    private TreeMapValueStatistics(double min, double max, int count,
+            double sum, double weightedSum, double weight) {
+        this.min = min;
+        this.max = max;
+        this.count = count;
+        this.sum = sum;
+        this.weightedSum = weightedSum;
+        this.weight = weight;
+    }
+
+    /**
+     * Combine the statistics of two subtrees.
+     *
+     * @param other the statistics of the other subtree
+     * @return the statistics of both subtrees
+     */
+    public TreeMapValueStatistics combine(TreeMapValueStatistics other) {
+        return new TreeMapValueStatistics(Math.min(min, other.min), Math.max(
+                max, other.max), count + other.count, sum + other.sum,
+                weightedSum + other.weightedSum, weight + other.weight);
+    }
+
+    /**
+     * @return the smallest value of the leaves
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @return the largest value of the leaves
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @return the number of leaves
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sum of the values of the leaves
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return the sum of the values of the leaves multiplied by their weights
+     */
+    public double getWeightedSum() {
+        return weightedSum;
+    }
+
+    /**
+     * @return the sum of the weights of the leaves
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return the mean of the values weighted by the weights of the leaves, the
+     *         mean of the values if all the weights are 0
+     */
+    public double getMean() {
+        if (weight > 0) {
+            return weightedSum / weight;
+        }
+        return sum / count;
+    }
+
+    @Override
+    public String toString() {
+        return "[min=" + min + ", max=" + max + ", count=" + count + ", sum="
+                + sum + "]";
+    }
+}
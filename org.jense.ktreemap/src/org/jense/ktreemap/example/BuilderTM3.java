@@ -14,8 +14,8 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.StringTokenizer;
 
-import org.jense.ktreemap.TreeMapNode;
-import org.jense.ktreemap.TreeMapNodeBuilder;
+import org.jense.ktreemap.core.TreeMapNode;
+import org.jense.ktreemap.core.TreeMapNodeBuilder;
 
 /**
  * Parse a TM3 file to build the tree. <BR>
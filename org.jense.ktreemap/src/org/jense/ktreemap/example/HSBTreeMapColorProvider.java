@@ -4,18 +4,25 @@
 package org.jense.ktreemap.example;
 
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.PaintEvent;
 import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.graphics.Color;
-import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
 import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.widgets.Canvas;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
-import org.jense.ktreemap.ITreeMapColorProvider;
+import org.jense.ktreemap.ITreeMapAggregateColorProvider;
 import org.jense.ktreemap.ITreeMapProvider;
+import org.jense.ktreemap.ITreeMapRGBColorProvider;
 import org.jense.ktreemap.KTreeMap;
-import org.jense.ktreemap.TreeMapNode;
+import org.jense.ktreemap.core.TreeMapNode;
+import org.jense.ktreemap.core.TreeMapValueStatistics;
 
 /**
  * An HSB color space color provider for KTreeMap. Uses a specified function to
@@ -25,10 +32,16 @@ import org.jense.ktreemap.TreeMapNode;
  * 
  * @author Andy Adamczak
  */
-public class HSBTreeMapColorProvider implements ITreeMapColorProvider {
+public class HSBTreeMapColorProvider implements
+    ITreeMapAggregateColorProvider, ITreeMapRGBColorProvider {
+  // number of colors of the gradient of each sign
+  private static final int GRADIENT_SIZE = 1024;
+
   protected KTreeMap m_jTreeMap;
-  protected double m_maxValue = Double.MIN_VALUE;
-  protected double m_minValue = Double.MAX_VALUE;
+  protected double m_maxValue = 0;
+  protected double m_minValue = 0;
+  // statistics of the values of the tree, shared by all its color providers
+  private TreeMapValueStatistics m_statistics;
   private float m_positiveHue;
   private float m_negativeHue;
   private float m_positiveSaturation = 1f;
@@ -36,6 +49,17 @@ public class HSBTreeMapColorProvider implements ITreeMapColorProvider {
 
   private ColorDistributionTypes m_colorDistribution = ColorDistributionTypes.Linear;
 
+  // colors of the positive and negative values, for a range of brightnesses
+  private int[] m_positiveGradient;
+  private int[] m_negativeGradient;
+  // from the adjusted values to the indexes of the gradients
+  private double m_positiveScale;
+  private double m_negativeScale;
+  private double m_gradientMax;
+  private double m_gradientMin;
+  // incremented each time the gradients are calculated
+  private int m_gradientVersion;
+
   /**
    * @param treeMap
    * @param color
@@ -147,17 +171,13 @@ public class HSBTreeMapColorProvider implements ITreeMapColorProvider {
     // in this color space, so use the
     // hue/saturation
     // constructions for grey scales.
-    float[] hsbvals = new float[3];
-
-    hsbvals = java.awt.Color.RGBtoHSB(positiveColor.getRed(), positiveColor
-        .getGreen(), positiveColor.getBlue(), hsbvals);
-    m_positiveHue = hsbvals[0];
+    // the hues of SWT are in degrees, the ones of this provider in [0, 1]
+    m_positiveHue = positiveColor.getRGB().getHSB()[0] / 360f;
     m_positiveSaturation = 1f;
 
-    hsbvals = java.awt.Color.RGBtoHSB(negativeColor.getRed(), negativeColor
-        .getGreen(), negativeColor.getBlue(), hsbvals);
-    m_negativeHue = hsbvals[0];
+    m_negativeHue = negativeColor.getRGB().getHSB()[0] / 360f;
     m_negativeSaturation = 1f;
+    m_positiveGradient = null;
   }
 
   /**
@@ -180,21 +200,52 @@ public class HSBTreeMapColorProvider implements ITreeMapColorProvider {
     m_positiveSaturation = positiveSaturation;
     m_negativeHue = negativeHue;
     m_negativeSaturation = negativeSaturation;
+    m_positiveGradient = null;
   }
 
   public Color getBackground(Object value) {
     // Figure out the current range of colors, map that range into a scale from
     // 0 to 1,
     // using the specified distribution type
-    if (m_maxValue == Double.MIN_VALUE || m_minValue == Double.MAX_VALUE) {
-      setValues(m_jTreeMap.getRoot());
-    }
+    updateValues();
     ITreeMapProvider provider = m_jTreeMap.getTreeMapProvider();
     double val = provider.getDoubleValue(value);
 
     return getBackground(val);
   }
 
+  public int getBackgroundRGB(Object value) {
+    updateValues();
+    ITreeMapProvider provider = m_jTreeMap.getTreeMapProvider();
+    return getBackgroundRGB(provider.getDoubleValue(value));
+  }
+
+  public void getBackgroundRGB(TreeMapNode[] nodes, int count, int[] rgb) {
+    updateValues();
+    ITreeMapProvider provider = m_jTreeMap.getTreeMapProvider();
+    for (int i = 0; i < count; i++) {
+      rgb[i] = getBackgroundRGB(provider.getDoubleValue(nodes[i].getValue()));
+    }
+  }
+
+  /**
+   * The colors are the ones of the gradients of the positive and the
+   * negative values.
+   */
+  public int getPaletteSize() {
+    return 2 * GRADIENT_SIZE;
+  }
+
+  /**
+   * The color of the mean value of the leaves of the node, weighted by their
+   * weights.
+   */
+  public Color getAggregateBackground(TreeMapNode node) {
+    updateValues();
+    return getBackground(node.getValueStatistics(
+        m_jTreeMap.getTreeMapProvider()).getMean());
+  }
+
   public Color getForeground(Object value) {
     return Display.getDefault().getSystemColor(SWT.COLOR_WHITE);
   }
@@ -204,26 +255,16 @@ public class HSBTreeMapColorProvider implements ITreeMapColorProvider {
   }
 
   /**
-   * Set the max and the min values in the tree map
-   * 
-   * @param root root of the JTreeMap
+   * Set the max and the min values of the tree map from the statistics of its
+   * root, which are only calculated again when the tree changes.
    */
-  void setValues(TreeMapNode root) {
-    if (root.isLeaf()) {
-      Object value = root.getValue();
-      ITreeMapProvider provider = m_jTreeMap.getTreeMapProvider();
-      double rootValue = provider.getDoubleValue(value);
-      if (rootValue >= m_maxValue) {
-        m_maxValue = rootValue;
-      }
-
-      if (rootValue <= m_minValue) {
-        m_minValue = rootValue;
-      }
-    } else {
-      for (TreeMapNode node : root.getChildren()) {
-        setValues(node);
-      }
+  void updateValues() {
+    TreeMapValueStatistics statistics = m_jTreeMap.getRoot()
+        .getValueStatistics(m_jTreeMap.getTreeMapProvider());
+    if (statistics != m_statistics) {
+      m_statistics = statistics;
+      m_maxValue = statistics.getMax();
+      m_minValue = statistics.getMin();
     }
   }
 
@@ -251,29 +292,96 @@ public class HSBTreeMapColorProvider implements ITreeMapColorProvider {
   }
 
   private Color getBackground(double val) {
-    double maxValue = m_maxValue;
-    double minValue = m_minValue;
+    // the colors of the cells are only used while they are drawn
+    return ResourceManager.getColorCache(m_jTreeMap.getDisplay()).getColor(
+        getBackgroundRGB(val));
+  }
+
+  /**
+   * @param val the value
+   * @return the color of the value packed in an int (0xRRGGBB)
+   */
+  int getBackgroundRGB(double val) {
+    checkGradients();
     if (val >= 0) {
       // Value is greater than 0, use the positive colors
-      double range = maxValue - Math.max(0, minValue);
-      val -= Math.max(0, minValue);
-      range = adjustValue(range);
-      java.awt.Color cc = new java.awt.Color(java.awt.Color.HSBtoRGB(
-          m_positiveHue, m_positiveSaturation,
-          (float)(adjustValue(val) / range)));
-      return ResourceManager.getColor(cc.getRed(), cc.getGreen(), cc.getBlue());
+      return m_positiveGradient[getIndex(adjustValue(val
+          - Math.max(0, m_minValue))
+          * m_positiveScale)];
     }
-
     // Value is less than 0, use the negative colors
-    double range = Math.abs(minValue - Math.min(0, maxValue));
-    val += Math.min(0, maxValue);
-    val = Math.abs(val);
-    // Value and range are not positive values, we need them to be for the math
-    // functions
-    range = adjustValue(range);
-    java.awt.Color cc = new java.awt.Color(java.awt.Color.HSBtoRGB(
-        m_negativeHue, m_negativeSaturation, (float)(adjustValue(val) / range)));
-    return ResourceManager.getColor(cc.getRed(), cc.getGreen(), cc.getBlue());
+    return m_negativeGradient[getIndex(adjustValue(Math.abs(val
+        + Math.min(0, m_maxValue)))
+        * m_negativeScale)];
+  }
+
+  /**
+   * Calculate the gradients again if the range or the colors changed.
+   */
+  private void checkGradients() {
+    if (m_positiveGradient == null || m_gradientMax != m_maxValue
+        || m_gradientMin != m_minValue) {
+      buildGradients();
+    }
+  }
+
+  private static int getIndex(double position) {
+    if (position >= GRADIENT_SIZE - 1) {
+      return GRADIENT_SIZE - 1;
+    }
+    // NaN and negative positions give the first color
+    return position > 0 ? (int)(position + 0.5) : 0;
+  }
+
+  /**
+   * Calculate the colors of GRADIENT_SIZE brightnesses evenly spaced from 0 to
+   * 1 for each sign. The brightness of a value is its adjusted value divided
+   * by the adjusted range, so the gradients are indexed by the adjusted
+   * values : a value costs the function of the distribution, a multiply and
+   * an array index, and each distribution keeps its shading. The scales are
+   * calculated again when the range changes, the gradients when the colors
+   * change.
+   */
+  private void buildGradients() {
+    double maxValue = m_maxValue;
+    double minValue = m_minValue;
+    if (m_positiveGradient == null) {
+      m_positiveGradient = buildGradient(m_positiveHue, m_positiveSaturation);
+      m_negativeGradient = buildGradient(m_negativeHue, m_negativeSaturation);
+    }
+    // the positive values go from max(0, min) to max
+    m_positiveScale = (GRADIENT_SIZE - 1)
+        / adjustValue(maxValue - Math.max(0, minValue));
+    // the negative values are mapped on 0 to |min - min(0, max)|
+    m_negativeScale = (GRADIENT_SIZE - 1)
+        / adjustValue(Math.abs(minValue - Math.min(0, maxValue)));
+    m_gradientMax = maxValue;
+    m_gradientMin = minValue;
+    m_gradientVersion++;
+  }
+
+  private static int[] buildGradient(float hue, float saturation) {
+    int[] gradient = new int[GRADIENT_SIZE];
+    for (int i = 0; i < GRADIENT_SIZE; i++) {
+      gradient[i] = toRGB(hue, saturation, (float)i / (GRADIENT_SIZE - 1));
+    }
+    return gradient;
+  }
+
+  /**
+   * Convert a color of the HSB space to a packed RGB int (0xRRGGBB). <BR>
+   * Only the fractional part of the hue is used (a hue of 1 is red again);
+   * the saturation and the brightness are clamped to [0, 1].
+   */
+  private static int toRGB(float hue, float saturation, float brightness) {
+    float h = (hue - (float)Math.floor(hue)) * 360f;
+    RGB rgb = new RGB(h < 360f ? h : 0f, clamp(saturation), clamp(brightness));
+    return rgb.red << 16 | rgb.green << 8 | rgb.blue;
+  }
+
+  private static float clamp(float value) {
+    // NaN gives 0
+    return value >= 1f ? 1f : value > 0f ? value : 0f;
   }
 
   /**
@@ -303,6 +411,11 @@ public class HSBTreeMapColorProvider implements ITreeMapColorProvider {
   }
 
   private class Legend extends Canvas {
+    // the gradient drawn once, for a size and a version of the gradients
+    private Image m_image;
+    private int m_imageWidth;
+    private int m_imageHeight;
+    private int m_imageVersion;
 
     /**
      * Constructor
@@ -317,6 +430,14 @@ public class HSBTreeMapColorProvider implements ITreeMapColorProvider {
           Legend.this.paintControl(e);
         }
       });
+      addDisposeListener(new DisposeListener() {
+        public void widgetDisposed(DisposeEvent e) {
+          if (m_image != null) {
+            m_image.dispose();
+            m_image = null;
+          }
+        }
+      });
     }
 
     @Override
@@ -328,15 +449,44 @@ public class HSBTreeMapColorProvider implements ITreeMapColorProvider {
     }
 
     protected void paintControl(PaintEvent e) {
-      GC gc = e.gc;
+      updateValues();
+      checkGradients();
       int width = this.getBounds().width;
+      int height = this.getBounds().height;
+      if (width <= 0 || height <= 0) {
+        return;
+      }
+      if (m_image == null || m_imageWidth != width || m_imageHeight != height
+          || m_imageVersion != m_gradientVersion) {
+        if (m_image != null) {
+          m_image.dispose();
+        }
+        m_image = createImage(width, height);
+        m_imageWidth = width;
+        m_imageHeight = height;
+        m_imageVersion = m_gradientVersion;
+      }
+      e.gc.drawImage(m_image, 0, 0);
+    }
+
+    /**
+     * Draw the gradient from the min to the max value in the pixels of an
+     * image : one column per value, the same row on each line.
+     */
+    private Image createImage(int width, int height) {
+      int[] row = new int[width];
       double step = (m_maxValue - m_minValue) / width;
       double value = m_minValue;
       for (int i = 0; i < width; i++) {
-        gc.setBackground(HSBTreeMapColorProvider.this.getBackground(value));
-        gc.fillRectangle(i, 0, 1, this.getBounds().height);
+        row[i] = getBackgroundRGB(value);
         value += step;
       }
+      ImageData data = new ImageData(width, height, 24, new PaletteData(
+          0xFF0000, 0xFF00, 0xFF));
+      for (int y = 0; y < height; y++) {
+        data.setPixels(0, y, width, row, 0);
+      }
+      return new Image(getDisplay(), data);
     }
   }
 }
@@ -32,6 +32,7 @@ import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
@@ -49,13 +50,13 @@ import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.jense.ktreemap.ITreeMapColorProvider;
 import org.jense.ktreemap.ITreeMapProvider;
 import org.jense.ktreemap.KTreeMap;
-import org.jense.ktreemap.SplitByNumber;
-import org.jense.ktreemap.SplitBySlice;
-import org.jense.ktreemap.SplitBySortedWeight;
-import org.jense.ktreemap.SplitByWeight;
-import org.jense.ktreemap.SplitSquarified;
-import org.jense.ktreemap.SplitStrategy;
-import org.jense.ktreemap.TreeMapNode;
+import org.jense.ktreemap.core.SplitByNumber;
+import org.jense.ktreemap.core.SplitBySlice;
+import org.jense.ktreemap.core.SplitBySortedWeight;
+import org.jense.ktreemap.core.SplitByWeight;
+import org.jense.ktreemap.core.SplitSquarified;
+import org.jense.ktreemap.core.SplitStrategy;
+import org.jense.ktreemap.core.TreeMapNode;
 
 /**
  * This sample class demonstrates how to plug-in a new workbench view. The view
@@ -88,6 +89,7 @@ public class KTreeMapView extends ViewPart {
     private Combo cmbTM3Weight;
     private Combo cmbTM3Value;
     private Composite legend;
+    private ITreeMapColorProvider legendProvider;
     private XMLTreeMapProvider xmlProvider;
     private TM3TreeMapProvider tm3Provider;
     private BuilderTM3 builderTM3;
@@ -155,10 +157,16 @@ public class KTreeMapView extends ViewPart {
         String key = cmbColorProvider.getText();
         ITreeMapColorProvider cp = colorProviders.get(key);
         kTreeMap.setColorProvider(cp);
+        if (legend != null && !legend.isDisposed() && cp == legendProvider) {
+            // the legend draws the colors of the provider again if they changed
+            legend.redraw();
+            return;
+        }
         if (legend != null) {
             legend.dispose();
         }
         legend = cp.getLegend(comp, SWT.NONE);
+        legendProvider = cp;
         legend.setLayoutData(new GridData(GridData.FILL_HORIZONTAL
                 | GridData.VERTICAL_ALIGN_BEGINNING));
         comp.layout();
@@ -246,7 +254,10 @@ public class KTreeMapView extends ViewPart {
             }
 
             private void drawLeafLabel(GC gc, TreeMapNode item) {
-                if (item.isLeaf()) {
+                if ( !intersectsClipping(item)) {
+                    return;
+                }
+                if (item.isLeaf() || item.isCollapsed()) {
                     drawLabel(gc, item);
                 } else {
                     for (TreeMapNode node : item.getChildren()) {
@@ -256,6 +267,8 @@ public class KTreeMapView extends ViewPart {
             }
         };
         kTreeMap.setTreeMapProvider(xmlProvider);
+        // the drag of the sash only scales the positions
+        kTreeMap.setNormalizedLayout(true);
     }
 
     private void createLeftComp(SashForm sash) {
@@ -308,6 +321,8 @@ public class KTreeMapView extends ViewPart {
                 Combo cmb = (Combo) e.getSource();
                 String field = cmb.getText();
                 TM3TreeMapProvider.setValueField(field);
+                // the values of the leaves are read from another field
+                kTreeMap.getRoot().invalidateValueStatistics();
                 createColorProviders();
                 updateColorProvider(cmbColorProvider.getParent());
                 kTreeMap.redraw();
@@ -403,8 +418,9 @@ public class KTreeMapView extends ViewPart {
 
         // children
         cursor = orig;
-        while (cursor.getChild(kTreeMap.getCursorPosition()) != null) {
-            TreeMapNode child = cursor.getChild(kTreeMap.getCursorPosition());
+        Point position = kTreeMap.getCursorPosition();
+        while (cursor.getChild(position.x, position.y) != null) {
+            TreeMapNode child = cursor.getChild(position.x, position.y);
             if ( !child.isLeaf()) {
                 ZoomAction action = new ZoomAction(provider.getLabel(child),
                         AbstractUIPlugin.imageDescriptorFromPlugin(ID_BUNDLE,
@@ -25,6 +25,7 @@ import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.CoolBar;
 import org.eclipse.swt.widgets.CoolItem;
 import org.eclipse.swt.widgets.Display;
+import org.jense.ktreemap.ColorCache;
 
 /**
  * Utility class for managing OS resources associated with SWT controls such as
@@ -48,6 +49,7 @@ public class ResourceManager {
 
     // Color support
     private static HashMap<RGB, Color> m_ColorMap = new HashMap<>();
+    private static HashMap<Display, ColorCache> m_ColorCaches = new HashMap<>();
     private static HashMap<ImageDescriptor, Image> m_DescriptorImageMap = new HashMap<>();
 
     // Font support
@@ -110,6 +112,13 @@ public class ResourceManager {
             iter.next().dispose();
         }
         m_ColorMap.clear();
+        synchronized (m_ColorCaches) {
+            for (Iterator<ColorCache> iter = m_ColorCaches.values().iterator(); iter
+                    .hasNext();) {
+                iter.next().dispose();
+            }
+            m_ColorCaches.clear();
+        }
     }
 
     /**
@@ -213,6 +222,8 @@ public class ResourceManager {
     }
 
     /**
+     * The color is kept until disposeColors() is called.
+     *
      * @param r
      * @param g
      * @param b
@@ -223,6 +234,8 @@ public class ResourceManager {
     }
 
     /**
+     * The color is kept until disposeColors() is called.
+     *
      * @param rgb
      * @return the color
      */
@@ -236,6 +249,60 @@ public class ResourceManager {
         return color;
     }
 
+    /**
+     * Get the cache of the colors of a display. <BR>
+     * It keeps at most ColorCache.DEFAULT_SIZE colors, and may be set to
+     * quantize the colors or read to monitor its hits and evictions. Unlike
+     * the colors of getColor, a color of the cache may be disposed once the
+     * current event is over : it is meant for the colors of the cells of a
+     * KTreeMap, which are only used while they are drawn.
+     *
+     * @param display the display
+     * @return the cache of the colors of the display
+     */
+    public static ColorCache getColorCache(Display display) {
+        synchronized (m_ColorCaches) {
+            ColorCache cache = m_ColorCaches.get(display);
+            if (cache == null) {
+                cache = new ColorCache(display, ColorCache.DEFAULT_SIZE);
+                m_ColorCaches.put(display, cache);
+                removeOnDispose(display);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Remove the color cache of a display when the display is disposed.
+     *
+     * @param display the display
+     */
+    private static void removeOnDispose(final Display display) {
+        final Runnable remove = new Runnable() {
+            @Override
+            public void run() {
+                ColorCache cache;
+                synchronized (m_ColorCaches) {
+                    cache = m_ColorCaches.remove(display);
+                }
+                if (cache != null) {
+                    cache.dispose();
+                }
+            }
+        };
+        if (display.getThread() == Thread.currentThread()) {
+            display.disposeExec(remove);
+        } else {
+            // disposeExec can only be called by the thread of the display
+            display.asyncExec(new Runnable() {
+                @Override
+                public void run() {
+                    display.disposeExec(remove);
+                }
+            });
+        }
+    }
+
     /**
      * @param id
      * @return the cursor
@@ -3,7 +3,7 @@ package org.jense.ktreemap.example;
 import java.util.Date;
 
 import org.jense.ktreemap.ITreeMapProvider;
-import org.jense.ktreemap.TreeMapNode;
+import org.jense.ktreemap.core.TreeMapNode;
 
 /**
  * TreeMapProvider for a TM3 file
@@ -1,7 +1,7 @@
 package org.jense.ktreemap.example;
 
 import org.jense.ktreemap.ITreeMapProvider;
-import org.jense.ktreemap.TreeMapNode;
+import org.jense.ktreemap.core.TreeMapNode;
 
 /**
  * TreeMapProvider for a XML file
@@ -0,0 +1,81 @@
+package org.jense.ktreemap.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of the culling of TreeMapLayout when the displayed root changes.
+ */
+public class TreeMapLayoutTest {
+    private static final int MIN_CELL_SIZE = 20;
+
+    /**
+     * A tree with a big branch and a small one, whose children are only
+     * calculated when the small branch is displayed alone.
+     */
+    private static TreeMapNode createTree() {
+        TreeMapNode root = new TreeMapNode("root");
+        TreeMapNode big = new TreeMapNode("big");
+        big.add(new TreeMapNode("big 1", 1000));
+        big.add(new TreeMapNode("big 2", 1000));
+        root.add(big);
+        TreeMapNode small = new TreeMapNode("small");
+        small.add(new TreeMapNode("small 1", 1));
+        small.add(new TreeMapNode("small 2", 1));
+        root.add(small);
+        return root;
+    }
+
+    private static TreeMapNode zoom(TreeMapNode root) {
+        TreeMapNode small = root.getChildren().get(1);
+        small.setBounds(new TreeMapRectangle(0, 0, 400, 300));
+        return small;
+    }
+
+    private static void assertDisplayed(TreeMapNode displayedRoot) {
+        assertFalse("the displayed root is collapsed",
+                displayedRoot.isCollapsed());
+        for (TreeMapNode child : displayedRoot.getChildren()) {
+            assertTrue("a child has no size", child.getWidth() > 0
+                    && child.getHeight() > 0);
+        }
+        assertNotNull("no child under the center", displayedRoot.getChild(200,
+                150));
+        assertFalse(displayedRoot.getActiveLeaf(200, 150) == displayedRoot);
+    }
+
+    @Test
+    public void zoomIntoCollapsedBranch() {
+        TreeMapNode root = createTree();
+        root.setSize(400, 300);
+        TreeMapLayout layout = new TreeMapLayout(root);
+        layout.setMinCellSize(MIN_CELL_SIZE);
+        SplitStrategy strategy = new SplitSquarified();
+        layout.calculatePositions(strategy, root, new LayoutContext(0));
+        assertTrue(root.getChildren().get(1).isCollapsed());
+
+        TreeMapNode small = zoom(root);
+        layout.calculatePositions(strategy, small, new LayoutContext(0));
+        assertDisplayed(small);
+    }
+
+    @Test
+    public void zoomIntoCulledBranch() {
+        TreeMapNode root = createTree();
+        root.setSize(400, 300);
+        TreeMapLayout layout = new TreeMapLayout(root);
+        layout.setMinCellSize(MIN_CELL_SIZE);
+        SplitStrategy strategy = new SplitSquarified();
+        layout.calculateNormalizedPositions(strategy, root, new LayoutContext(0));
+        assertTrue(root.getChildren().get(1).isCollapsed());
+
+        TreeMapNode small = zoom(root);
+        layout.calculateNormalizedPositions(strategy, small,
+                new LayoutContext(0));
+        assertDisplayed(small);
+        assertTrue(layout.isNormalized(small));
+    }
+}
@@ -0,0 +1,107 @@
+package org.jense.ktreemap.example;
+
+import static org.junit.Assert.assertTrue;
+
+import org.jense.ktreemap.example.HSBTreeMapColorProvider.ColorDistributionTypes;
+import org.junit.Test;
+
+/**
+ * Tests of the gradients of HSBTreeMapColorProvider against the colors
+ * calculated for each value, as before the gradients.
+ */
+public class HSBTreeMapColorProviderTest {
+    private static final float HUE = 0.6f;
+    private static final float SATURATION = 0.8f;
+    // a step of brightness of the gradients is less than 1 level of 255, and
+    // the conversions of AWT and SWT may round differently
+    private static final int TOLERANCE = 2;
+
+    /**
+     * The color of a value calculated without gradient, as
+     * getBackground(double) did with java.awt.Color.HSBtoRGB. The brightness
+     * is clamped to [0, 1], like the colors of the gradients : HSBtoRGB gives
+     * no meaningful color outside.
+     */
+    private static int getExpectedRGB(ColorDistributionTypes distribution,
+            double min, double max, double val) {
+        double range;
+        if (val >= 0) {
+            range = max - Math.max(0, min);
+            val -= Math.max(0, min);
+        } else {
+            range = Math.abs(min - Math.min(0, max));
+            val = Math.abs(val + Math.min(0, max));
+        }
+        float brightness = (float)(adjustValue(distribution, val)
+                / adjustValue(distribution, range));
+        brightness = brightness >= 1f ? 1f : brightness > 0f ? brightness : 0f;
+        return java.awt.Color.HSBtoRGB(HUE, SATURATION, brightness) & 0xFFFFFF;
+    }
+
+    private static double adjustValue(ColorDistributionTypes distribution,
+            double value) {
+        switch (distribution) {
+        case Log:
+            return Math.log1p(value);
+        case Exp:
+            return Math.exp(value);
+        case SquareRoot:
+            return Math.sqrt(value);
+        case CubicRoot:
+            return Math.cbrt(value);
+        default:
+            return value;
+        }
+    }
+
+    private static void check(ColorDistributionTypes distribution, double min,
+            double max) {
+        HSBTreeMapColorProvider provider = new HSBTreeMapColorProvider(null,
+                distribution, HUE, SATURATION);
+        provider.m_minValue = min;
+        provider.m_maxValue = max;
+        // values evenly spaced, and evenly spaced on a log scale near 0
+        int count = 10000;
+        double[] values = new double[2 * count + 1];
+        for (int i = 0; i <= count; i++) {
+            values[i] = min + (max - min) * i / count;
+        }
+        for (int i = 1; i <= count; i++) {
+            double val = Math.pow(Math.max(Math.abs(min), Math.abs(max)),
+                    (double)i / count);
+            values[count + i] = min < 0 && i % 2 == 0 ? -val : val;
+        }
+        for (double val : values) {
+            if (val < min || val > max) {
+                continue;
+            }
+            int expected = getExpectedRGB(distribution, min, max, val);
+            int actual = provider.getBackgroundRGB(val);
+            for (int shift = 0; shift <= 16; shift += 8) {
+                int diff = Math.abs((expected >> shift & 0xFF)
+                        - (actual >> shift & 0xFF));
+                assertTrue(distribution + " [" + min + ", " + max + "] " + val
+                        + " : " + Integer.toHexString(actual) + " instead of "
+                        + Integer.toHexString(expected), diff <= TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void gradientsMatchColorsOfValues() {
+        for (ColorDistributionTypes distribution : ColorDistributionTypes
+                .values()) {
+            if (distribution == ColorDistributionTypes.Exp) {
+                // the exponential of a big range is infinite
+                check(distribution, 0, 10);
+                check(distribution, -8, 5);
+                check(distribution, 2, 20);
+            } else {
+                check(distribution, 0, 1e9);
+                check(distribution, -1e6, 1e3);
+                check(distribution, 3, 700);
+                check(distribution, -50, -2);
+            }
+        }
+    }
+}